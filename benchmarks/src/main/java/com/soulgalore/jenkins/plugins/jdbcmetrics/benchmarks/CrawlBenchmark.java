@@ -0,0 +1,110 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.benchmarks;
+
+import hudson.util.StreamTaskListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.soulgalore.crawler.core.CrawlerConfiguration;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.MeasureResult;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.MeasureTask;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlCanonicalizer;
+
+/**
+ * Crawl and measure a {@link SyntheticSite} with the {@link MeasureTask}, the
+ * part of the build step that runs on the node of the build, without Jenkins.
+ * The checks and reports the build step runs afterwards is measured by
+ * {@link ReportBenchmark#responsesToReports()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CrawlBenchmark {
+
+	private static final String HEADER_NAME = "jdbcmetrics";
+
+	@Param({ "1000", "10000" })
+	public int pages;
+
+	@Param({ "10" })
+	public int fanOut;
+
+	@Param({ "0", "20" })
+	public int medianLatency;
+
+	@Param({ "20" })
+	public int httpThreads;
+
+	private SyntheticSite site;
+	private int level;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		level = 1;
+		while (Math.pow(fanOut, level - 1) < pages)
+			level++;
+		site = new SyntheticSite(0, pages, fanOut, level, HEADER_NAME,
+				new Latency(medianLatency, 0.5), httpThreads * 2);
+		site.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		site.stop();
+	}
+
+	@Benchmark
+	public MeasureResult crawlAndMeasure() throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(CrawlerConfiguration.MAX_THREADS_PROPERTY_NAME,
+				"" + httpThreads);
+
+		return new MeasureTask(properties, site.getUrl(), null, level,
+				HEADER_NAME, "", "", 1, 0, false, null, 0, 0, null,
+				MeasureTask.NO_TIME_BUDGET, null, UrlCanonicalizer.NONE, null,
+				0, new StreamTaskListener(new OutputStream() {
+					@Override
+					public void write(int b) {
+					}
+				})).call();
+	}
+}
@@ -0,0 +1,70 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.benchmarks;
+
+import java.util.Random;
+
+/**
+ * A log normal latency, the way response times of a real site usually is
+ * spread: most pages close to the median and a long tail of slow ones.
+ */
+public final class Latency {
+
+	/**
+	 * No latency at all.
+	 */
+	public static final Latency NONE = new Latency(0, 0);
+
+	private final int median;
+	private final double sigma;
+
+	/**
+	 * Create a latency.
+	 * 
+	 * @param theMedian
+	 *            the median in milliseconds
+	 * @param theSigma
+	 *            the spread, 0 is always the median and 1 gives a 99
+	 *            percentile about ten times the median
+	 */
+	public Latency(int theMedian, double theSigma) {
+		median = theMedian;
+		sigma = theSigma;
+	}
+
+	/**
+	 * Get the latency of one request.
+	 * 
+	 * @param random
+	 *            the random to use
+	 * @return the latency in milliseconds
+	 */
+	public long next(Random random) {
+		if (median <= 0)
+			return 0;
+		return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+	}
+
+	@Override
+	public String toString() {
+		return "median:" + median + "ms sigma:" + sigma;
+	}
+}
@@ -0,0 +1,171 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.benchmarks;
+
+import hudson.FilePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlTemplates;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsCollector;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsPipeline;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.TemplateStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsHTMLReport;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsJUnitXMLReport;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsXMLReport;
+
+/**
+ * Measure the path from the responses to the reports: turning responses into
+ * metrics, the statistics and each of the three reports, one by one and all
+ * of them after each other like a build does. Run with <code>-prof gc</code>
+ * to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ReportBenchmark {
+
+	private static final int MAX_READS = 20;
+	private static final int MAX_WRITES = 2;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int pages;
+
+	private List<HTMLPageResponse> responses;
+	private List<PageMetrics> metrics;
+	private MetricsStatistics stats;
+	private List<TemplateStatistics> templateStats;
+	private File dir;
+	private FilePath workSpace;
+	private PrintStream logger;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		responses = SyntheticPages.responses(pages);
+		metrics = toMetrics(responses);
+		stats = MetricsStatistics.of(metrics);
+		templateStats = TemplateStatistics.of(metrics, UrlTemplates.DEFAULT);
+
+		dir = File.createTempFile("jdbcmetrics", "benchmark");
+		dir.delete();
+		dir.mkdirs();
+		workSpace = new FilePath(dir);
+		logger = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	@Benchmark
+	public List<PageMetrics> metrics() {
+		return toMetrics(responses);
+	}
+
+	@Benchmark
+	public MetricsStatistics statistics() {
+		return MetricsStatistics.of(metrics);
+	}
+
+	@Benchmark
+	public List<TemplateStatistics> templateStatistics() {
+		return TemplateStatistics.of(metrics, UrlTemplates.DEFAULT);
+	}
+
+	@Benchmark
+	public void xmlReport() {
+		new JDBCMetricsXMLReport(MAX_READS, MAX_WRITES, logger).writeReport(
+				metrics, stats, templateStats, workSpace, true);
+	}
+
+	@Benchmark
+	public void htmlReport() {
+		new JDBCMetricsHTMLReport(logger).writeReport(metrics, stats,
+				templateStats, workSpace, new Date());
+	}
+
+	@Benchmark
+	public boolean junitReport() {
+		return new JDBCMetricsJUnitXMLReport(MAX_READS, MAX_WRITES,
+				"jdbcmetrics", logger).verifyAndWriteReport(metrics, stats,
+				workSpace);
+	}
+
+	/**
+	 * The whole path a build takes, from the responses to the written reports.
+	 */
+	@Benchmark
+	public boolean responsesToReports() {
+		List<PageMetrics> theMetrics = toMetrics(responses);
+		MetricsStatistics theStats = MetricsStatistics.of(theMetrics);
+		boolean isSuccess = new JDBCMetricsJUnitXMLReport(MAX_READS,
+				MAX_WRITES, "jdbcmetrics", logger).verifyAndWriteReport(
+				theMetrics, theStats, workSpace);
+		List<TemplateStatistics> theTemplateStats = TemplateStatistics.of(
+				theMetrics, UrlTemplates.DEFAULT);
+		new JDBCMetricsHTMLReport(logger).writeReport(theMetrics, theStats,
+				theTemplateStats, workSpace, new Date());
+		new JDBCMetricsXMLReport(MAX_READS, MAX_WRITES, logger).writeReport(
+				theMetrics, theStats, theTemplateStats, workSpace, true);
+		return isSuccess;
+	}
+
+	private static List<PageMetrics> toMetrics(List<HTMLPageResponse> responses) {
+		MetricsCollector collector = new MetricsCollector();
+		MetricsPipeline pipeline = new MetricsPipeline(collector);
+		for (HTMLPageResponse response : responses)
+			pipeline.onResponse(response);
+		return collector.getMetrics();
+	}
+}
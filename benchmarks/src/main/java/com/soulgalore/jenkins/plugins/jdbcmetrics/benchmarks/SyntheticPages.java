@@ -0,0 +1,97 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+
+/**
+ * Create responses that looks like the ones from a site using JDBCMetrics.
+ * The values is random but the same for every run, so runs can be compared.
+ */
+public final class SyntheticPages {
+
+	private static final long SEED = 4711;
+
+	/**
+	 * One of this many pages doesn't send the JDBCMetrics headers.
+	 */
+	private static final int MISSING_HEADERS_EVERY = 1000;
+
+	private SyntheticPages() {
+	}
+
+	/**
+	 * Create the responses.
+	 * 
+	 * @param nrOfPages
+	 *            the number of responses
+	 * @return the responses
+	 */
+	public static List<HTMLPageResponse> responses(int nrOfPages) {
+		Random random = new Random(SEED);
+		List<HTMLPageResponse> responses = new ArrayList<HTMLPageResponse>(
+				nrOfPages);
+		for (int i = 0; i < nrOfPages; i++) {
+			Map<String, String> headers = new HashMap<String, String>();
+			headers.put("Content-Type", "text/html; charset=UTF-8");
+			if (i % MISSING_HEADERS_EVERY != MISSING_HEADERS_EVERY - 1)
+				headers.putAll(jdbcHeaders(random));
+			responses.add(new HTMLPageResponse(new PageURL(url(i)), 200,
+					headers, "", "UTF-8", 0, "text/html", 20 + random
+							.nextInt(500)));
+		}
+		return responses;
+	}
+
+	/**
+	 * Create the JDBCMetrics headers of a page, most pages does a few reads
+	 * and some pages a lot.
+	 */
+	public static Map<String, String> jdbcHeaders(Random random) {
+		int reads = random.nextInt(10) == 0 ? 20 + random.nextInt(100)
+				: random.nextInt(15);
+		int writes = random.nextInt(20) == 0 ? 1 + random.nextInt(5) : 0;
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME, "" + reads);
+		headers.put(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME, "" + writes);
+		headers.put(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME, ""
+				+ reads * (1 + random.nextInt(5)));
+		headers.put(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME, ""
+				+ writes * (2 + random.nextInt(10)));
+		return headers;
+	}
+
+	/**
+	 * The url of page i, spread over a number of sections like a real site.
+	 */
+	public static String url(int i) {
+		return "http://localhost:8080/section" + (i % 37) + "/page/" + i
+				+ (i % 5 == 0 ? "?query=" + (i % 101) + "&sort=name" : "");
+	}
+}
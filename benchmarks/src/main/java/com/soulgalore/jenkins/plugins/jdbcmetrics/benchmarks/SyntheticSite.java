@@ -0,0 +1,200 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server serving a made up site, answering like an
+ * application with the JDBCMetrics filter installed. The pages is a tree:
+ * the start page links to fan out pages, each of them to fan out more, down
+ * to the depth or until there is enough pages. Every page also links back to
+ * the start page.
+ * 
+ * The JDBCMetrics headers is only sent when the request has the header
+ * name, and a page always gets the same values.
+ */
+public class SyntheticSite {
+
+	private static final String PAGE_PATH = "/page/";
+	private static final long SEED = 4711;
+
+	private final int nrOfPages;
+	private final int fanOut;
+	private final String headerName;
+	private final Latency latency;
+	private final HttpServer server;
+	private final ExecutorService service;
+
+	/**
+	 * Create the site, call {@link #start()} to start serving it.
+	 * 
+	 * @param port
+	 *            the port, 0 picks a free port
+	 * @param thePages
+	 *            the max number of pages
+	 * @param theFanOut
+	 *            the number of links from every page
+	 * @param depth
+	 *            the number of levels of pages, the start page is level 1
+	 * @param theHeaderName
+	 *            the request header that turns on the JDBCMetrics headers
+	 * @param theLatency
+	 *            the time every page takes
+	 * @param threads
+	 *            the number of requests handled at the same time
+	 * @throws IOException
+	 *             if the port can't be used
+	 */
+	public SyntheticSite(int port, int thePages, int theFanOut, int depth,
+			String theHeaderName, Latency theLatency, int threads)
+			throws IOException {
+		fanOut = Math.max(1, theFanOut);
+		nrOfPages = (int) Math.min(thePages, pagesInTree(fanOut, depth));
+		headerName = theHeaderName;
+		latency = theLatency;
+		server = HttpServer.create(new InetSocketAddress("localhost", port),
+				threads);
+		service = Executors.newFixedThreadPool(threads);
+		server.setExecutor(service);
+		server.createContext("/", new PageHandler());
+	}
+
+	private static long pagesInTree(int fanOut, int depth) {
+		long pages = 0;
+		long level = 1;
+		for (int i = 0; i < depth && pages < Integer.MAX_VALUE; i++) {
+			pages += level;
+			level *= fanOut;
+		}
+		return pages;
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		service.shutdown();
+	}
+
+	/**
+	 * @return the url of the start page
+	 */
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + PAGE_PATH
+				+ 0;
+	}
+
+	public int getNrOfPages() {
+		return nrOfPages;
+	}
+
+	private class PageHandler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				int page = getPage(exchange.getRequestURI().getPath());
+				if (page < 0 || page >= nrOfPages) {
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+
+				Random random = new Random(SEED ^ page);
+				long time = latency.next(new Random());
+				if (time > 0)
+					Thread.sleep(time);
+
+				if (exchange.getRequestHeaders().containsKey(headerName)) {
+					for (Map.Entry<String, String> header : SyntheticPages
+							.jdbcHeaders(random).entrySet())
+						exchange.getResponseHeaders().add(header.getKey(),
+								header.getValue());
+				}
+
+				byte[] body = html(page).getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type",
+						"text/html; charset=UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				exchange.sendResponseHeaders(503, -1);
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	private static int getPage(String path) {
+		if (!path.startsWith(PAGE_PATH))
+			return -1;
+		try {
+			return Integer.parseInt(path.substring(PAGE_PATH.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String html(int page) {
+		StringBuilder html = new StringBuilder(
+				"<html><head><title>Page ").append(page).append(
+				"</title></head><body><h1>Page ").append(page).append(
+				"</h1><a href=\"").append(PAGE_PATH).append(0).append(
+				"\">Start</a><ul>");
+		long first = (long) page * fanOut + 1;
+		for (long child = first; child < first + fanOut && child < nrOfPages; child++)
+			html.append("<li><a href=\"").append(PAGE_PATH).append(child)
+					.append("\">Page ").append(child).append("</a></li>");
+		return html.append("</ul></body></html>").toString();
+	}
+
+	/**
+	 * Start a site to point a Jenkins job to. Arguments: port, pages, fan out,
+	 * depth and median latency (ms).
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int pages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int fanOut = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		int median = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+		SyntheticSite site = new SyntheticSite(port, pages, fanOut, depth,
+				"jdbcmetrics", new Latency(median, 0.5), 50);
+		site.start();
+		System.out.println("Serving " + site.getNrOfPages() + " pages at "
+				+ site.getUrl());
+	}
+}
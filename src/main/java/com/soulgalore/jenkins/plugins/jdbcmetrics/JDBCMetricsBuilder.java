@@ -22,42 +22,71 @@ package com.soulgalore.jenkins.plugins.jdbcmetrics;
 
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.remoting.Future;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 
 import javax.servlet.ServletException;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
-import com.google.inject.Guice;
-import com.google.inject.Injector;
-import com.soulgalore.crawler.core.Crawler;
 import com.soulgalore.crawler.core.CrawlerConfiguration;
-import com.soulgalore.crawler.core.CrawlerResult;
-import com.soulgalore.crawler.core.HTMLPageResponse;
-import com.soulgalore.crawler.core.PageURL;
-import com.soulgalore.crawler.guice.CrawlModule;
 import com.soulgalore.crawler.util.HeaderUtil;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableAdaptiveBlock;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableAuthBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableCanonicalUrlsBlock;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableCrawlerInternalsBlock;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableCrawlerPathBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableFailFastBlock;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableHeaderNameBlock;
-import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Fetcher;
-import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.FetcherModule;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableIncrementalCrawlBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableRegressionBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableSamplingBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableShardingBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableTemplateSamplingBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableTimeBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.blocks.EnableTimeBudgetBlock;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.LimitRules;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.LimitsCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.PageCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.RegressionCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.SuiteCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.SuiteGate;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.TimeBudgetCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.TimeCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.CrawlTask;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.FailFast;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.MeasureResult;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.MeasureTask;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.Shard;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlCanonicalizer;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlFrontier;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlTemplates;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.AdaptiveResponseFetcher;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStore;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.TemplateStatistics;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsHTMLReport;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsJUnitXMLReport;
 import com.soulgalore.jenkins.plugins.jdbcmetrics.report.JDBCMetricsXMLReport;
@@ -101,6 +130,11 @@ public class JDBCMetricsBuilder extends Builder {
 	 */
 	private final int maxWrites;
 
+	/**
+	 * The limits per path prefix or regex, one rule per line.
+	 */
+	private final String limitRules;
+
 	/**
 	 * The login if you are using basic auth.
 	 */
@@ -161,6 +195,188 @@ public class JDBCMetricsBuilder extends Builder {
 	 */
 	private final String notFollowPath;
 
+	/**
+	 * If sampling is checked or not.
+	 */
+	private final boolean checkSampling;
+
+	/**
+	 * The number of times each page is measured.
+	 */
+	private final String samples;
+
+	/**
+	 * The number of times each page is fetched before it is measured.
+	 */
+	private final String warmups;
+
+	/**
+	 * If the regression check against a reference build is checked or not.
+	 */
+	private final boolean checkRegression;
+
+	/**
+	 * The number of the reference build, empty means the last successful.
+	 */
+	private final String baselineBuild;
+
+	/**
+	 * How many more reads than in the reference build a page may do.
+	 */
+	private final String maxReadsDelta;
+
+	/**
+	 * How many more writes than in the reference build a page may do.
+	 */
+	private final String maxWritesDelta;
+
+	/**
+	 * How much more database time (ms) than in the reference build a page may
+	 * use.
+	 */
+	private final String maxTimeDelta;
+
+	/**
+	 * How much (in percent) a page may grow compared to the reference build.
+	 */
+	private final String maxRelativeDelta;
+
+	/**
+	 * If the database time checks is checked or not.
+	 */
+	private final boolean checkTime;
+
+	/**
+	 * The max read time (ms) of a page.
+	 */
+	private final String maxReadTime;
+
+	/**
+	 * The max write time (ms) of a page.
+	 */
+	private final String maxWriteTime;
+
+	/**
+	 * The max 90 percentile read time (ms) of all pages.
+	 */
+	private final String maxPercentile90ReadTime;
+
+	/**
+	 * The max 90 percentile write time (ms) of all pages.
+	 */
+	private final String maxPercentile90WriteTime;
+
+	/**
+	 * The max total database time (ms) of all pages.
+	 */
+	private final String maxTotalTime;
+
+	/**
+	 * If the urls found by the previous build should be reused.
+	 */
+	private final boolean checkIncremental;
+
+	/**
+	 * How many percent of the known pages that is parsed for new links.
+	 */
+	private final String rediscoverPercent;
+
+	/**
+	 * If the pages should be measured in shards on more than one node.
+	 */
+	private final boolean checkSharding;
+
+	/**
+	 * The number of shards.
+	 */
+	private final String shards;
+
+	/**
+	 * The label of the nodes measuring the shards.
+	 */
+	private final String shardLabel;
+
+	/**
+	 * If the number of requests at the same time should adapt to the server.
+	 */
+	private final boolean checkAdaptive;
+
+	/**
+	 * How many percent slower the server may get before fewer requests is
+	 * sent at the same time.
+	 */
+	private final String maxSlowdown;
+
+	/**
+	 * If the crawl and the fetch should stop after a time.
+	 */
+	private final boolean checkTimeBudget;
+
+	/**
+	 * The max time (minutes) of the crawl and the fetch.
+	 */
+	private final String timeBudget;
+
+	/**
+	 * If the build should fail when the time budget ran out.
+	 */
+	private final boolean failIncomplete;
+
+	/**
+	 * If the measuring should stop when enough pages failed.
+	 */
+	private final boolean checkFailFast;
+
+	/**
+	 * The number of failing pages that stops the measuring.
+	 */
+	private final String maxFailures;
+
+	/**
+	 * If the urls should be made canonical before they are fetched.
+	 */
+	private final boolean checkCanonicalUrls;
+
+	/**
+	 * The query parameters removed from the urls, comma separated.
+	 */
+	private final String ignoredParams;
+
+	/**
+	 * The only query parameters kept in the urls, comma separated.
+	 */
+	private final String keptParams;
+
+	/**
+	 * If the query parameters should be sorted.
+	 */
+	private final boolean sortParams;
+
+	/**
+	 * If the path of the urls should be lower cased.
+	 */
+	private final boolean lowerCasePath;
+
+	/**
+	 * If a trailing slash should be removed from the path.
+	 */
+	private final boolean removeTrailingSlash;
+
+	/**
+	 * If only a sample of the urls of every template should be measured.
+	 */
+	private final boolean checkTemplateSampling;
+
+	/**
+	 * The max number of urls measured per template.
+	 */
+	private final String perTemplate;
+
+	/**
+	 * The templates of the urls, one per line.
+	 */
+	private final String urlTemplates;
+
 	/**
 	 * If no request header name is configured, this will be sent to the server,
 	 * with the values of <em>true</em> so that JDBCMetrics will send back the
@@ -188,18 +404,63 @@ public class JDBCMetricsBuilder extends Builder {
 	 */
 	public final static String JDBC_WRITE_TIME_HEADER_NAME = "write-time";
 
+	/**
+	 * The crawler property for the number of threads parsing the responses.
+	 */
+	private final static String THREADS_IN_POOL_PROPERTY_NAME = "com.soulgalore.crawler.threadsinworkingpool";
+
+	/**
+	 * The crawler property for basic auth, in the format host:port:login:password.
+	 */
+	private final static String AUTH_PROPERTY_NAME = "com.soulgalore.crawler.auth";
+
+	/**
+	 * How many percent of the known pages that is parsed for links if not
+	 * configured.
+	 */
+	private final static int DEFAULT_REDISCOVER_PERCENT = 10;
+
+	/**
+	 * How many percent slower the server may get if not configured.
+	 */
+	private final static int DEFAULT_MAX_SLOWDOWN = 50;
+
+	/**
+	 * The time budget (minutes) if not configured.
+	 */
+	private final static int DEFAULT_TIME_BUDGET = 60;
+
+	/**
+	 * The number of failing pages that stops the measuring if not configured.
+	 */
+	private final static int DEFAULT_MAX_FAILURES = 10;
+
+	/**
+	 * The number of urls measured per template if not configured.
+	 */
+	private final static int DEFAULT_PER_TEMPLATE = 10;
+
 	@DataBoundConstructor
 	public JDBCMetricsBuilder(String url, String urls, int level, int maxReads,
-			int maxWrites, EnableAuthBlock checkAuth,
+			int maxWrites, String limitRules, EnableAuthBlock checkAuth,
 			EnableHeaderNameBlock checkHeader,
 			EnableCrawlerInternalsBlock checkCrawler,
-			EnableCrawlerPathBlock checkCrawlerPath) {
+			EnableCrawlerPathBlock checkCrawlerPath,
+			EnableSamplingBlock checkSampling,
+			EnableRegressionBlock checkRegression, EnableTimeBlock checkTime,
+			EnableIncrementalCrawlBlock checkIncremental,
+			EnableShardingBlock checkSharding, EnableAdaptiveBlock checkAdaptive,
+			EnableTimeBudgetBlock checkTimeBudget,
+			EnableFailFastBlock checkFailFast,
+			EnableCanonicalUrlsBlock checkCanonicalUrls,
+			EnableTemplateSamplingBlock checkTemplateSampling) {
 
 		this.url = url;
 		this.urls = urls;
 		this.level = level;
 		this.maxReads = maxReads;
 		this.maxWrites = maxWrites;
+		this.limitRules = limitRules;
 
 		this.headerName = checkHeader == null ? DEFAULT_HEADER_NAME
 				: checkHeader.getHeaderName();
@@ -225,6 +486,81 @@ public class JDBCMetricsBuilder extends Builder {
 				.getNotFollowPath();
 		this.checkCrawlerPath = checkCrawlerPath == null ? false : true;
 
+		this.samples = checkSampling == null ? "" : checkSampling
+				.getSamples();
+		this.warmups = checkSampling == null ? "" : checkSampling
+				.getWarmups();
+		this.checkSampling = checkSampling == null ? false : true;
+
+		this.baselineBuild = checkRegression == null ? "" : checkRegression
+				.getBaselineBuild();
+		this.maxReadsDelta = checkRegression == null ? "" : checkRegression
+				.getMaxReadsDelta();
+		this.maxWritesDelta = checkRegression == null ? "" : checkRegression
+				.getMaxWritesDelta();
+		this.maxTimeDelta = checkRegression == null ? "" : checkRegression
+				.getMaxTimeDelta();
+		this.maxRelativeDelta = checkRegression == null ? ""
+				: checkRegression.getMaxRelativeDelta();
+		this.checkRegression = checkRegression == null ? false : true;
+
+		this.maxReadTime = checkTime == null ? "" : checkTime.getMaxReadTime();
+		this.maxWriteTime = checkTime == null ? "" : checkTime
+				.getMaxWriteTime();
+		this.maxPercentile90ReadTime = checkTime == null ? "" : checkTime
+				.getMaxPercentile90ReadTime();
+		this.maxPercentile90WriteTime = checkTime == null ? "" : checkTime
+				.getMaxPercentile90WriteTime();
+		this.maxTotalTime = checkTime == null ? "" : checkTime
+				.getMaxTotalTime();
+		this.checkTime = checkTime == null ? false : true;
+
+		this.rediscoverPercent = checkIncremental == null ? ""
+				: checkIncremental.getRediscoverPercent();
+		this.checkIncremental = checkIncremental == null ? false : true;
+
+		this.shards = checkSharding == null ? "" : checkSharding.getShards();
+		this.shardLabel = checkSharding == null ? "" : checkSharding
+				.getShardLabel();
+		this.checkSharding = checkSharding == null ? false : true;
+
+		this.maxSlowdown = checkAdaptive == null ? "" : checkAdaptive
+				.getMaxSlowdown();
+		this.checkAdaptive = checkAdaptive == null ? false : true;
+
+		this.timeBudget = checkTimeBudget == null ? "" : checkTimeBudget
+				.getTimeBudget();
+		this.failIncomplete = checkTimeBudget == null ? false
+				: checkTimeBudget.isFailIncomplete();
+		this.checkTimeBudget = checkTimeBudget == null ? false : true;
+
+		this.maxFailures = checkFailFast == null ? "" : checkFailFast
+				.getMaxFailures();
+		this.checkFailFast = checkFailFast == null ? false : true;
+
+		this.ignoredParams = checkCanonicalUrls == null ? ""
+				: checkCanonicalUrls.getIgnoredParams();
+		this.keptParams = checkCanonicalUrls == null ? "" : checkCanonicalUrls
+				.getKeptParams();
+		this.sortParams = checkCanonicalUrls == null ? false
+				: checkCanonicalUrls.isSortParams();
+		this.lowerCasePath = checkCanonicalUrls == null ? false
+				: checkCanonicalUrls.isLowerCasePath();
+		this.removeTrailingSlash = checkCanonicalUrls == null ? false
+				: checkCanonicalUrls.isRemoveTrailingSlash();
+		this.checkCanonicalUrls = checkCanonicalUrls == null ? false : true;
+
+		this.perTemplate = checkTemplateSampling == null ? ""
+				: checkTemplateSampling.getPerTemplate();
+		this.urlTemplates = checkTemplateSampling == null ? ""
+				: checkTemplateSampling.getUrlTemplates();
+		this.checkTemplateSampling = checkTemplateSampling == null ? false
+				: true;
+
+	}
+
+	public String getBaselineBuild() {
+		return baselineBuild;
 	}
 
 	public String getConnectionTimeout() {
@@ -259,6 +595,46 @@ public class JDBCMetricsBuilder extends Builder {
 		return maxWrites;
 	}
 
+	public String getLimitRules() {
+		return limitRules;
+	}
+
+	public String getMaxReadTime() {
+		return maxReadTime;
+	}
+
+	public String getMaxWriteTime() {
+		return maxWriteTime;
+	}
+
+	public String getMaxPercentile90ReadTime() {
+		return maxPercentile90ReadTime;
+	}
+
+	public String getMaxPercentile90WriteTime() {
+		return maxPercentile90WriteTime;
+	}
+
+	public String getMaxTotalTime() {
+		return maxTotalTime;
+	}
+
+	public String getMaxReadsDelta() {
+		return maxReadsDelta;
+	}
+
+	public String getMaxWritesDelta() {
+		return maxWritesDelta;
+	}
+
+	public String getMaxTimeDelta() {
+		return maxTimeDelta;
+	}
+
+	public String getMaxRelativeDelta() {
+		return maxRelativeDelta;
+	}
+
 	public String getNotFollowPath() {
 		return notFollowPath;
 	}
@@ -267,6 +643,14 @@ public class JDBCMetricsBuilder extends Builder {
 		return password;
 	}
 
+	public String getShardLabel() {
+		return shardLabel;
+	}
+
+	public String getShards() {
+		return shards;
+	}
+
 	public String getSocketTimeout() {
 		return socketTimeout;
 	}
@@ -275,6 +659,46 @@ public class JDBCMetricsBuilder extends Builder {
 		return threadsPool;
 	}
 
+	public String getRediscoverPercent() {
+		return rediscoverPercent;
+	}
+
+	public String getMaxSlowdown() {
+		return maxSlowdown;
+	}
+
+	public String getIgnoredParams() {
+		return ignoredParams;
+	}
+
+	public String getKeptParams() {
+		return keptParams;
+	}
+
+	public String getPerTemplate() {
+		return perTemplate;
+	}
+
+	public String getUrlTemplates() {
+		return urlTemplates;
+	}
+
+	public String getMaxFailures() {
+		return maxFailures;
+	}
+
+	public String getTimeBudget() {
+		return timeBudget;
+	}
+
+	public String getSamples() {
+		return samples;
+	}
+
+	public String getWarmups() {
+		return warmups;
+	}
+
 	public String getUrl() {
 		return url;
 	}
@@ -299,6 +723,67 @@ public class JDBCMetricsBuilder extends Builder {
 		return checkHeader;
 	}
 
+	public boolean isCheckSampling() {
+		return checkSampling;
+	}
+
+	public boolean isCheckRegression() {
+		return checkRegression;
+	}
+
+	public boolean isCheckTime() {
+		return checkTime;
+	}
+
+	public boolean isCheckIncremental() {
+		return checkIncremental;
+	}
+
+	public boolean isCheckSharding() {
+		return checkSharding;
+	}
+
+	public boolean isCheckAdaptive() {
+		return checkAdaptive;
+	}
+
+	public boolean isCheckTimeBudget() {
+		return checkTimeBudget;
+	}
+
+	public boolean isFailIncomplete() {
+		return failIncomplete;
+	}
+
+	public boolean isCheckFailFast() {
+		return checkFailFast;
+	}
+
+	public boolean isCheckCanonicalUrls() {
+		return checkCanonicalUrls;
+	}
+
+	public boolean isCheckTemplateSampling() {
+		return checkTemplateSampling;
+	}
+
+	public boolean isSortParams() {
+		return sortParams;
+	}
+
+	public boolean isLowerCasePath() {
+		return lowerCasePath;
+	}
+
+	public boolean isRemoveTrailingSlash() {
+		return removeTrailingSlash;
+	}
+
+	@Override
+	public Action getProjectAction(AbstractProject<?, ?> project) {
+		return new JDBCMetricsProjectAction(project);
+	}
+
 	@Override
 	public DescriptorImpl getDescriptor() {
 		return (DescriptorImpl) super.getDescriptor();
@@ -306,14 +791,33 @@ public class JDBCMetricsBuilder extends Builder {
 
 	@Override
 	public boolean perform(AbstractBuild build, Launcher launcher,
-			BuildListener listener) {
+			BuildListener listener) throws InterruptedException {
 
 		PrintStream logger = listener.getLogger();
 
-		if (!setupAuth(logger))
+		// parse the rules before crawling, a typo shouldn't cost a full crawl
+		LimitRules rules;
+		try {
+			rules = LimitRules.parse(limitRules);
+		} catch (IllegalArgumentException e) {
+			logger.println("Couldn't parse the limit rules " + e.getMessage());
+			return false;
+		}
+		UrlTemplates templates;
+		try {
+			templates = UrlTemplates.parse(urlTemplates);
+		} catch (IllegalArgumentException e) {
+			logger.println("Couldn't parse the url templates " + e.getMessage());
+			return false;
+		}
+
+		// the settings are only used by this build, never set as system
+		// properties, so builds running at the same time can't change them
+		Properties crawlerProperties = new Properties();
+		if (!setupAuth(crawlerProperties, logger))
 			return false;
 
-		setupCrawlerInternals();
+		setupCrawlerInternals(crawlerProperties);
 
 		logger.println("Start crawling the URL:s, start with "
 				+ url
@@ -324,82 +828,360 @@ public class JDBCMetricsBuilder extends Builder {
 				+ (connectionTimeout != null ? " connectionTimeout:"
 						+ connectionTimeout : ""));	
 		
-		final CrawlerResult result = crawl();
-		Set<HTMLPageResponse> responses = new HashSet<HTMLPageResponse>(result.getVerifiedURLResponses().size() + result.getNonWorkingUrls().size());
-		responses.addAll(result.getVerifiedURLResponses());
-		responses.addAll(result.getNonWorkingUrls());
-		
-		// should we also fetch specific urls?
-		if (urls!=null) {			
-			responses.addAll(fetchSpecificUrls());
+		File frontierFile = new File(build.getProject().getRootDir(),
+				UrlFrontier.FILENAME);
+		if (checkSharding && !checkIncremental)
+			logger.println("Measuring in shards reuses the urls found by the previous build, they are stored in "
+					+ UrlFrontier.FILENAME);
+		UrlFrontier previous = isReusingUrls() ? readFrontier(frontierFile,
+				logger) : null;
+
+		long deadline = checkTimeBudget ? System.currentTimeMillis()
+				+ getTimeBudgetMinutes() * 60000L : Long.MAX_VALUE;
+
+		List<PageCheck> checks = new ArrayList<PageCheck>();
+		checks.add(new LimitsCheck(maxReads, maxWrites, rules));
+		if (checkTime)
+			checks.add(new TimeCheck(toInt(maxReadTime, PageCheck.NOT_CHECKED),
+					toInt(maxWriteTime, PageCheck.NOT_CHECKED)));
+		RegressionCheck regressionCheck = getRegressionCheck(build, logger);
+		if (regressionCheck != null)
+			checks.add(regressionCheck);
+
+		// the checks is sent along to stop measuring when enough pages failed
+		FailFast failFast = checkFailFast ? new FailFast(checks, toInt(
+				maxFailures, DEFAULT_MAX_FAILURES)) : null;
+
+		// crawl and measure on the node of the build, only the metrics is
+		// sent back, so the HTML is never parsed by the Jenkins master
+		MeasureResult result;
+		try {
+			if (checkSharding)
+				result = measureInShards(build, launcher, listener,
+						crawlerProperties, previous, deadline, failFast,
+						templates);
+			else
+				result = launcher.getChannel().call(
+						createTask(build, listener, crawlerProperties,
+								previous, getRediscoverPercentValue(), null,
+								deadline, failFast, templates));
+		} catch (IOException e) {
+			logger.println("Couldn't measure the pages " + e.toString());
+			return false;
+		}
+
+		List<PageMetrics> metrics = result.getMetrics();
+		MetricsStatistics stats = result.getStats();
+
+		if (result.getFrontier() != null) {
+			try {
+				result.getFrontier().write(frontierFile);
+			} catch (IOException e) {
+				logger.println("Couldn't store the urls for the next build "
+						+ e.toString());
+			}
+		}
+
+		List<SuiteCheck> suiteChecks = getSuiteChecks();
+		if (checkTimeBudget) {
+			boolean ranOut = !result.isComplete() && !result.isFailedFast();
+			suiteChecks.add(new TimeBudgetCheck(getTimeBudgetMinutes(), ranOut,
+					failIncomplete));
+			if (ranOut)
+				logger.println("The time budget ran out, the reports only holds the "
+						+ metrics.size()
+						+ " measured pages"
+						+ (failIncomplete ? " and the build will fail" : ""));
 		}
-			
-		JDBCMetricsJUnitXMLReport reporter = new JDBCMetricsJUnitXMLReport(maxReads,
-				maxWrites, headerName, logger);
+
+		if (result.isFailedFast())
+			logger.println("Stopped measuring after "
+					+ failFast.getMaxFailures()
+					+ " failing pages, the reports only holds the "
+					+ metrics.size() + " measured pages");
+
+		JDBCMetricsJUnitXMLReport reporter = new JDBCMetricsJUnitXMLReport(
+				checks, suiteChecks, headerName, logger,
+				JDBCMetricsJUnitXMLReport.DEFAULT_MAX_LOGGED_FAILURES);
 		JDBCMetricsHTMLReport htmlReporter = new JDBCMetricsHTMLReport(logger);
-		htmlReporter.writeReport(responses, build.getWorkspace(), build);
+		// the pages of the same kind is grouped the same way as they are
+		// sampled
+		List<TemplateStatistics> templateStats = TemplateStatistics.of(
+				metrics, templates);
+		htmlReporter.writeReport(metrics, stats, templateStats,
+				build.getWorkspace(), build.getTime());
 		JDBCMetricsXMLReport xmlReporter = new JDBCMetricsXMLReport(maxReads,
 				maxWrites, logger);
-		xmlReporter.writeReport(responses, build.getWorkspace());
+		xmlReporter.writeReport(metrics, stats, templateStats,
+				build.getWorkspace(), result.isComplete());
+
+		try {
+			MetricsStore.write(new File(build.getRootDir(),
+					MetricsStore.FILENAME), metrics, stats);
+		} catch (IOException e) {
+			logger.println("Couldn't store the metrics for the trend "
+					+ e.toString());
+		}
+
+		return reporter.verifyAndWriteReport(metrics, stats,
+				build.getWorkspace());
+	}
+
+	private MeasureTask createTask(AbstractBuild build,
+			BuildListener listener, Properties crawlerProperties,
+			UrlFrontier previous, int percent, Shard shard, long deadline,
+			FailFast failFast, UrlTemplates templates) {
+		return new MeasureTask(crawlerProperties, url, urls, level,
+				headerName, followPath, notFollowPath, checkSampling ? Math.max(
+						1, toInt(samples, 1)) : 1, checkSampling ? toInt(
+						warmups, 0) : 0, isReusingUrls(), previous, percent,
+				build.getNumber(), shard, getTimeLeft(deadline), failFast,
+				getCanonicalizer(), checkTemplateSampling ? templates : null,
+				toInt(perTemplate, DEFAULT_PER_TEMPLATE), listener);
+	}
+
+	/**
+	 * The shards needs the urls before they start, so they are always reused
+	 * when measuring in shards, else every build crawls the whole site on one
+	 * node first.
+	 */
+	private boolean isReusingUrls() {
+		return checkIncremental || checkSharding;
+	}
+
+	private UrlCanonicalizer getCanonicalizer() {
+		return checkCanonicalUrls ? new UrlCanonicalizer(ignoredParams,
+				keptParams, sortParams, lowerCasePath, removeTrailingSlash)
+				: UrlCanonicalizer.NONE;
+	}
+
+	private int getTimeBudgetMinutes() {
+		return toInt(timeBudget, DEFAULT_TIME_BUDGET);
+	}
 
-		return  reporter.verifyAndWriteReport(responses, build.getWorkspace());
+	/**
+	 * Get the time left until the deadline, the tasks sets their own deadline
+	 * from it, since the clocks of the nodes may differ.
+	 */
+	private static long getTimeLeft(long deadline) {
+		if (deadline == Long.MAX_VALUE)
+			return MeasureTask.NO_TIME_BUDGET;
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	private int getRediscoverPercentValue() {
+		return Math.min(100,
+				toInt(rediscoverPercent, DEFAULT_REDISCOVER_PERCENT));
 	}
 
-	private Set<HTMLPageResponse> fetchSpecificUrls() {
-		final Injector injector = Guice.createInjector(new FetcherModule());
-		final Fetcher fetcher = injector.getInstance(Fetcher.class);
+	/**
+	 * Measure the pages in shards on the nodes with the shard label. The
+	 * shards needs to know the urls before they start, so if the previous
+	 * build didn't store them, the site is crawled on the node of the build
+	 * first. When sampling the templates, keeping a time budget or using
+	 * canonical urls, the first build instead measures on its own node while
+	 * crawling, so it only crawls the sample, keeps the pages measured when
+	 * the budget runs out and never fetches a duplicate url.
+	 */
+	private MeasureResult measureInShards(AbstractBuild build,
+			Launcher launcher, BuildListener listener,
+			Properties crawlerProperties, UrlFrontier previous, long deadline,
+			FailFast failFast, UrlTemplates templates) throws IOException,
+			InterruptedException {
 
-		String[] a = urls.split(",");
-		Set<PageURL> theUrls = new HashSet<PageURL>(a.length);
-		for (String string : a) {
-			theUrls.add(new PageURL(string));
+		PrintStream logger = listener.getLogger();
+		int nrOfShards = Math.max(1, toInt(shards, 1));
+		List<VirtualChannel> channels = getShardChannels(launcher, logger);
+
+		UrlFrontier frontier = previous;
+		int percent = getRediscoverPercentValue();
+		if (frontier == null
+				|| !frontier.isCrawlOf(url, level, followPath, notFollowPath)) {
+			if (checkTemplateSampling || deadline != Long.MAX_VALUE
+					|| checkCanonicalUrls) {
+				// a full crawl would defeat the sample, the crawler can't
+				// tell the urls found when the budget runs out and fetches
+				// the duplicates, so the first build measures on its own node
+				// and stores the urls for the shards
+				logger.println("No urls stored by a previous build, measuring "
+						+ (checkTemplateSampling ? "a sample" : "the pages")
+						+ " on the node of the build, the next builds measure in shards");
+				return launcher.getChannel().call(
+						createTask(build, listener, crawlerProperties, null,
+								percent, null, deadline, failFast, templates));
+			}
+			logger.println("No urls stored by a previous build, crawling the site on the node of the build before measuring in shards");
+			frontier = launcher.getChannel().call(
+					new CrawlTask(crawlerProperties, url, level, headerName,
+							followPath, notFollowPath, listener));
+			// only when aborted
+			if (frontier == null) {
+				List<PageMetrics> none = new ArrayList<PageMetrics>();
+				return new MeasureResult(none, MetricsStatistics.of(none),
+						null, false, false);
+			}
+			// just crawled, no need to look for new links
+			percent = 0;
 		}
 
-		Map<String, String> requestHeaders = new HashMap<String, String>();
-		requestHeaders.put(headerName, "true");
+		logger.println("Measuring the pages in " + nrOfShards + " shards on "
+				+ channels.size() + " nodes");
+		List<Future<MeasureResult>> futures = new ArrayList<Future<MeasureResult>>(
+				nrOfShards);
 		try {
-			return fetcher.get(theUrls, requestHeaders);
+			for (int i = 0; i < nrOfShards; i++) {
+				VirtualChannel channel = channels.get(i % channels.size());
+				// the failing pages of all shards is counted here
+				futures.add(channel.callAsync(createTask(build, listener,
+						crawlerProperties, frontier, percent, new Shard(i,
+								nrOfShards), deadline, failFast == null ? null
+								: failFast.exportTo(channel), templates)));
+			}
+
+			List<MeasureResult> results = new ArrayList<MeasureResult>(
+					nrOfShards);
+			for (Future<MeasureResult> future : futures)
+				results.add(future.get());
+			return MeasureResult.merge(results);
+
+		} catch (ExecutionException e) {
+			throw new IOException("A shard failed", e.getCause());
 		} finally {
-			fetcher.shutdown();
+			// stop the other shards if one failed or the build was aborted
+			for (Future<MeasureResult> future : futures)
+				future.cancel(true);
 		}
+	}
 
+	private List<VirtualChannel> getShardChannels(Launcher launcher,
+			PrintStream logger) {
+		List<VirtualChannel> channels = new ArrayList<VirtualChannel>();
+		Label label = shardLabel == null || "".equals(shardLabel.trim()) ? null
+				: Label.get(shardLabel.trim());
+		if (label != null) {
+			for (Node node : label.getNodes()) {
+				// offline nodes has no channel
+				VirtualChannel channel = node.getChannel();
+				if (channel != null)
+					channels.add(channel);
+			}
+		}
+		if (channels.isEmpty()) {
+			logger.println("No online nodes with the label [" + shardLabel
+					+ "], measuring all shards on the node of the build");
+			channels.add(launcher.getChannel());
+		}
+		return channels;
 	}
-	private CrawlerResult crawl() {
 
-		CrawlerConfiguration configuration = CrawlerConfiguration.builder()
-				.setMaxLevels(level).setVerifyUrls(true)
-				.setOnlyOnPath(followPath).setNotOnPath(notFollowPath)
-				.setRequestHeaders(headerName + ":true").setStartUrl(url)
-				.build();
+	private static UrlFrontier readFrontier(File file, PrintStream logger) {
+		if (!file.exists()) {
+			logger.println("No urls stored by a previous build, doing a full crawl");
+			return null;
+		}
+		try {
+			return UrlFrontier.read(file);
+		} catch (IOException e) {
+			logger.println("Couldn't read the urls of the previous build, doing a full crawl "
+					+ e.toString());
+			return null;
+		}
+	}
 
-		final Injector injector = Guice.createInjector(new CrawlModule());
-		final Crawler crawler = injector.getInstance(Crawler.class);
+	private List<SuiteCheck> getSuiteChecks() {
+		List<SuiteCheck> suiteChecks = new ArrayList<SuiteCheck>();
+		if (!checkTime)
+			return suiteChecks;
+		addGate(suiteChecks, SuiteGate.Measure.PERCENTILE90_READ_TIME,
+				maxPercentile90ReadTime);
+		addGate(suiteChecks, SuiteGate.Measure.PERCENTILE90_WRITE_TIME,
+				maxPercentile90WriteTime);
+		addGate(suiteChecks, SuiteGate.Measure.TOTAL_TIME, maxTotalTime);
+		return suiteChecks;
+	}
+
+	private static void addGate(List<SuiteCheck> suiteChecks,
+			SuiteGate.Measure measure, String max) {
+		int value = toInt(max, PageCheck.NOT_CHECKED);
+		if (value != PageCheck.NOT_CHECKED)
+			suiteChecks.add(new SuiteGate(measure, value));
+	}
+
+	private RegressionCheck getRegressionCheck(AbstractBuild build,
+			PrintStream logger) {
+
+		if (!checkRegression)
+			return null;
+
+		Run<?, ?> baseline = baselineBuild == null
+				|| "".equals(baselineBuild.trim()) ? build.getProject()
+				.getLastSuccessfulBuild() : build.getProject()
+				.getBuildByNumber(toInt(baselineBuild, 0));
+
+		if (baseline == null || baseline.getNumber() == build.getNumber()) {
+			logger.println("No reference build found, the pages will not be checked for regressions");
+			return null;
+		}
+
+		File metricsFile = new File(baseline.getRootDir(), MetricsStore.FILENAME);
+		if (!metricsFile.exists()) {
+			logger.println("Build #" + baseline.getNumber()
+					+ " has no stored metrics, the pages will not be checked for regressions");
+			return null;
+		}
 
 		try {
-			return crawler.getUrls(configuration);
-		} finally {
-			crawler.shutdown();
+			logger.println("Checking the pages for regressions against build #"
+					+ baseline.getNumber());
+			return RegressionCheck.load(metricsFile, baseline.getNumber(),
+					toInt(maxReadsDelta, PageCheck.NOT_CHECKED),
+					toInt(maxWritesDelta, PageCheck.NOT_CHECKED),
+					toInt(maxTimeDelta, PageCheck.NOT_CHECKED),
+					toInt(maxRelativeDelta, PageCheck.NOT_CHECKED));
+		} catch (IOException e) {
+			logger.println("Couldn't read the metrics of build #"
+					+ baseline.getNumber() + " " + e.toString());
+			return null;
 		}
 	}
 
-	private void setupCrawlerInternals() {
+	/**
+	 * Parse a number of the configuration, the form rejects negative numbers
+	 * so they are treated as not set.
+	 */
+	private static int toInt(String value, int defaultValue) {
+		if (value == null || "".equals(value.trim()))
+			return defaultValue;
+		try {
+			int number = Integer.parseInt(value.trim());
+			return number < 0 ? defaultValue : number;
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private void setupCrawlerInternals(Properties properties) {
 		if (!"".equals(httpThreads))
-			System.setProperty(CrawlerConfiguration.MAX_THREADS_PROPERTY_NAME,
-					httpThreads);
+			properties.setProperty(
+					CrawlerConfiguration.MAX_THREADS_PROPERTY_NAME, httpThreads);
 		if (!"".equals(threadsPool))
-			System.setProperty("com.soulgalore.crawler.threadsinworkingpool",
-					threadsPool);
+			properties.setProperty(THREADS_IN_POOL_PROPERTY_NAME, threadsPool);
 		if (!"".equals(socketTimeout))
-			System.setProperty(
+			properties.setProperty(
 					CrawlerConfiguration.SOCKET_TIMEOUT_PROPERTY_NAME,
 					socketTimeout);
 		if (!"".equals(connectionTimeout))
-			System.setProperty(
+			properties.setProperty(
 					CrawlerConfiguration.CONNECTION_TIMEOUT_PROPERTY_NAME,
 					connectionTimeout);
+		// the HTTP threads is the max number of requests at the same time
+		if (checkAdaptive)
+			properties.setProperty(
+					AdaptiveResponseFetcher.MAX_SLOWDOWN_PROPERTY_NAME,
+					String.valueOf(toInt(maxSlowdown, DEFAULT_MAX_SLOWDOWN)));
 	}
 
-	private boolean setupAuth(PrintStream logger) {
+	private boolean setupAuth(Properties properties, PrintStream logger) {
 
 		if (!"".equals(login) && !"".equals(password)) {
 
@@ -407,8 +1189,8 @@ public class JDBCMetricsBuilder extends Builder {
 				URL u = new URL(url);
 				String host = u.getHost()
 						+ (u.getPort() != -1 ? ":" + u.getPort() : ":80");
-				System.setProperty("com.soulgalore.crawler.auth", host + ":"
-						+ login + ":" + password);
+				properties.setProperty(AUTH_PROPERTY_NAME, host + ":" + login
+						+ ":" + password);
 			} catch (MalformedURLException e) {
 				logger.println(e.toString());
 				return false;
@@ -434,6 +1216,107 @@ public class JDBCMetricsBuilder extends Builder {
 			return FormValidation.ok();
 		}
 
+		public FormValidation doCheckLimitRules(@QueryParameter String value) {
+			try {
+				LimitRules.parse(value);
+				return FormValidation.ok();
+			} catch (IllegalArgumentException e) {
+				return FormValidation.error(e.getMessage());
+			}
+		}
+
+		public FormValidation doCheckSamples(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckWarmups(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckBaselineBuild(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxReadsDelta(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxWritesDelta(
+				@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxTimeDelta(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxRelativeDelta(
+				@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxReadTime(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxWriteTime(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxPercentile90ReadTime(
+				@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxPercentile90WriteTime(
+				@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxTotalTime(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckRediscoverPercent(
+				@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckShards(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxSlowdown(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckTimeBudget(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckMaxFailures(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		public FormValidation doCheckPerTemplate(@QueryParameter String value) {
+			return checkNumber(value);
+		}
+
+		/**
+		 * An empty value is ok and gives the default.
+		 */
+		private static FormValidation checkNumber(String value) {
+			if (value == null || "".equals(value.trim()))
+				return FormValidation.ok();
+			try {
+				if (Integer.parseInt(value.trim()) >= 0)
+					return FormValidation.ok();
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			return FormValidation.error("Please set a number of 0 or more");
+		}
+
 		public String getDisplayName() {
 			return "JDBCMetrics";
 		}
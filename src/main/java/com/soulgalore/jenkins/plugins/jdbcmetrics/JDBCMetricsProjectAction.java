@@ -0,0 +1,200 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics;
+
+import hudson.model.Action;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.util.ChartUtil.NumberOnlyBuildLabel;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.BuildSummary;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStore;
+
+/**
+ * Show the trend of database reads & writes between builds. Only the summary
+ * in the beginning of the metrics file of each build is read, and only when
+ * the graph is requested the first time for that build.
+ */
+public class JDBCMetricsProjectAction implements Action {
+
+	private static final int WIDTH = 500;
+	private static final int HEIGHT = 200;
+
+	/**
+	 * The number of builds in the graph, older builds is never loaded. Only
+	 * the small summary of a build is read, so a hundred builds is cheap, and
+	 * more makes the points of the graph too dense to read. Change it with
+	 * the system property
+	 * com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsProjectAction.maxBuilds
+	 */
+	private static final int MAX_BUILDS = Math.max(1, Integer.getInteger(
+			JDBCMetricsProjectAction.class.getName() + ".maxBuilds", 100));
+
+	private final AbstractProject<?, ?> project;
+
+	/**
+	 * The summaries read so far, null if the build has no metrics.
+	 */
+	private final Map<Integer, BuildSummary> summaries = new HashMap<Integer, BuildSummary>();
+
+	public JDBCMetricsProjectAction(AbstractProject<?, ?> theProject) {
+		project = theProject;
+	}
+
+	public AbstractProject<?, ?> getProject() {
+		return project;
+	}
+
+	public String getIconFileName() {
+		return null;
+	}
+
+	public String getDisplayName() {
+		return "JDBCMetrics trend";
+	}
+
+	public String getUrlName() {
+		return "jdbcmetrics";
+	}
+
+	/**
+	 * Check if there are any builds that can be shown.
+	 * 
+	 * @return true if one of the last completed builds has metrics
+	 */
+	public boolean hasTrend() {
+		for (AbstractBuild<?, ?> build : getBuilds()) {
+			if (getSummary(build) != null)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Draw the total reads & writes per build.
+	 */
+	public void doTotalTrend(StaplerRequest request, StaplerResponse response)
+			throws IOException {
+		draw(false, request, response);
+	}
+
+	/**
+	 * Draw the 90 percentile of reads & writes per page, per build.
+	 */
+	public void doPercentileTrend(StaplerRequest request,
+			StaplerResponse response) throws IOException {
+		draw(true, request, response);
+	}
+
+	private void draw(final boolean percentile, StaplerRequest request,
+			StaplerResponse response) throws IOException {
+
+		List<AbstractBuild<?, ?>> builds = getBuilds();
+		if (builds.isEmpty()) {
+			response.sendError(404);
+			return;
+		}
+		AbstractBuild<?, ?> lastBuild = builds.get(0);
+
+		// oldest first, so the graph goes from left to right
+		Collections.reverse(builds);
+		final DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+		for (AbstractBuild<?, ?> build : builds) {
+			BuildSummary summary = getSummary(build);
+			if (summary == null)
+				continue;
+			NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
+			if (percentile) {
+				dataSet.add(summary.getPercentile90Reads(), "reads", label);
+				dataSet.add(summary.getPercentile90Writes(), "writes", label);
+			} else {
+				dataSet.add(summary.getTotalReads(), "reads", label);
+				dataSet.add(summary.getTotalWrites(), "writes", label);
+			}
+		}
+
+		new Graph(lastBuild.getTimeInMillis(), WIDTH, HEIGHT) {
+			@Override
+			protected JFreeChart createGraph() {
+				return ChartFactory.createLineChart(null, "build",
+						percentile ? "90 percentile per page" : "total",
+						dataSet.build(), PlotOrientation.VERTICAL, true, true,
+						false);
+			}
+		}.doPng(request, response);
+	}
+
+	/**
+	 * Get the last completed builds, newest first. A running build has no
+	 * metrics yet, and walking back from the last one only loads the builds
+	 * in the graph.
+	 */
+	private List<AbstractBuild<?, ?>> getBuilds() {
+		List<AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+		AbstractBuild<?, ?> build = project.getLastCompletedBuild();
+		while (build != null && builds.size() < MAX_BUILDS) {
+			builds.add(build);
+			build = build.getPreviousBuild();
+		}
+		return builds;
+	}
+
+	private BuildSummary getSummary(AbstractBuild<?, ?> build) {
+		synchronized (summaries) {
+			if (summaries.containsKey(build.getNumber()))
+				return summaries.get(build.getNumber());
+		}
+
+		BuildSummary summary = null;
+		File file = new File(build.getRootDir(), MetricsStore.FILENAME);
+		if (file.exists()) {
+			try {
+				summary = MetricsStore.readSummary(file);
+			} catch (IOException e) {
+				summary = null;
+			}
+		}
+
+		// a build that is running will get its file later
+		if (summary != null || !build.isBuilding()) {
+			synchronized (summaries) {
+				summaries.put(build.getNumber(), summary);
+			}
+		}
+		return summary;
+	}
+}
@@ -0,0 +1,36 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.blocks;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public final class EnableAdaptiveBlock {
+	private final String maxSlowdown;
+
+	@DataBoundConstructor
+	public EnableAdaptiveBlock(String maxSlowdown) {
+		this.maxSlowdown = maxSlowdown;
+	}
+
+	public String getMaxSlowdown() {
+		return maxSlowdown;
+	}
+}
@@ -0,0 +1,62 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.blocks;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public final class EnableCanonicalUrlsBlock {
+	private final String ignoredParams;
+	private final String keptParams;
+	private final boolean sortParams;
+	private final boolean lowerCasePath;
+	private final boolean removeTrailingSlash;
+
+	@DataBoundConstructor
+	public EnableCanonicalUrlsBlock(String ignoredParams, String keptParams,
+			boolean sortParams, boolean lowerCasePath,
+			boolean removeTrailingSlash) {
+		this.ignoredParams = ignoredParams;
+		this.keptParams = keptParams;
+		this.sortParams = sortParams;
+		this.lowerCasePath = lowerCasePath;
+		this.removeTrailingSlash = removeTrailingSlash;
+	}
+
+	public String getIgnoredParams() {
+		return ignoredParams;
+	}
+
+	public String getKeptParams() {
+		return keptParams;
+	}
+
+	public boolean isSortParams() {
+		return sortParams;
+	}
+
+	public boolean isLowerCasePath() {
+		return lowerCasePath;
+	}
+
+	public boolean isRemoveTrailingSlash() {
+		return removeTrailingSlash;
+	}
+}
@@ -0,0 +1,61 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.blocks;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public final class EnableRegressionBlock {
+	private final String baselineBuild;
+	private final String maxReadsDelta;
+	private final String maxWritesDelta;
+	private final String maxTimeDelta;
+	private final String maxRelativeDelta;
+
+	@DataBoundConstructor
+	public EnableRegressionBlock(String baselineBuild, String maxReadsDelta,
+			String maxWritesDelta, String maxTimeDelta, String maxRelativeDelta) {
+		this.baselineBuild = baselineBuild;
+		this.maxReadsDelta = maxReadsDelta;
+		this.maxWritesDelta = maxWritesDelta;
+		this.maxTimeDelta = maxTimeDelta;
+		this.maxRelativeDelta = maxRelativeDelta;
+	}
+
+	public String getBaselineBuild() {
+		return baselineBuild;
+	}
+
+	public String getMaxReadsDelta() {
+		return maxReadsDelta;
+	}
+
+	public String getMaxWritesDelta() {
+		return maxWritesDelta;
+	}
+
+	public String getMaxTimeDelta() {
+		return maxTimeDelta;
+	}
+
+	public String getMaxRelativeDelta() {
+		return maxRelativeDelta;
+	}
+}
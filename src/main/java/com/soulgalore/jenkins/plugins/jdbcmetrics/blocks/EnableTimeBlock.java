@@ -0,0 +1,62 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.blocks;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public final class EnableTimeBlock {
+	private final String maxReadTime;
+	private final String maxWriteTime;
+	private final String maxPercentile90ReadTime;
+	private final String maxPercentile90WriteTime;
+	private final String maxTotalTime;
+
+	@DataBoundConstructor
+	public EnableTimeBlock(String maxReadTime, String maxWriteTime,
+			String maxPercentile90ReadTime, String maxPercentile90WriteTime,
+			String maxTotalTime) {
+		this.maxReadTime = maxReadTime;
+		this.maxWriteTime = maxWriteTime;
+		this.maxPercentile90ReadTime = maxPercentile90ReadTime;
+		this.maxPercentile90WriteTime = maxPercentile90WriteTime;
+		this.maxTotalTime = maxTotalTime;
+	}
+
+	public String getMaxReadTime() {
+		return maxReadTime;
+	}
+
+	public String getMaxWriteTime() {
+		return maxWriteTime;
+	}
+
+	public String getMaxPercentile90ReadTime() {
+		return maxPercentile90ReadTime;
+	}
+
+	public String getMaxPercentile90WriteTime() {
+		return maxPercentile90WriteTime;
+	}
+
+	public String getMaxTotalTime() {
+		return maxTotalTime;
+	}
+}
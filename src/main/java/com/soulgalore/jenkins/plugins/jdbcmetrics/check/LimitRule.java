@@ -0,0 +1,81 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import java.io.Serializable;
+
+/**
+ * The limits for the pages matching a path prefix or a regular expression.
+ * A limit that is {@link PageCheck#NOT_CHECKED} isn't checked for the
+ * matching pages.
+ */
+public final class LimitRule implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String pattern;
+	private final boolean regex;
+	private final int maxReads;
+	private final int maxWrites;
+	private final int maxTime;
+
+	public LimitRule(String thePattern, boolean isRegex, int theMaxReads,
+			int theMaxWrites, int theMaxTime) {
+		pattern = thePattern;
+		regex = isRegex;
+		maxReads = theMaxReads;
+		maxWrites = theMaxWrites;
+		maxTime = theMaxTime;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public boolean isRegex() {
+		return regex;
+	}
+
+	public int getMaxReads() {
+		return maxReads;
+	}
+
+	public int getMaxWrites() {
+		return maxWrites;
+	}
+
+	/**
+	 * The max time (ms) spent in the database, read time plus write time.
+	 */
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+	@Override
+	public String toString() {
+		return pattern + " reads:" + toString(maxReads) + " writes:"
+				+ toString(maxWrites) + " time:" + toString(maxTime);
+	}
+
+	private static String toString(int limit) {
+		return limit == PageCheck.NOT_CHECKED ? "-" : "" + limit;
+	}
+}
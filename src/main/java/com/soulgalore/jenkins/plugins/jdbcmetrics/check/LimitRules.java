@@ -0,0 +1,301 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An ordered table of limit rules, compiled once into a matcher. The path
+ * prefixes is kept in a trie and all regular expressions is joined into one
+ * pattern, so finding the rule of a page doesn't depend on the number of
+ * rules. When more than one rule matches a page, the first one wins.
+ * 
+ * The rules is written one per line:
+ * 
+ * <pre>
+ * # path prefix or ^regex, max reads, max writes and optionally max time (ms)
+ * /search 40 5
+ * ^/product/[0-9]+$ 10 0 200
+ * / 2 0
+ * </pre>
+ * 
+ * A pattern starting with ^ is a regular expression, else a path prefix. A -
+ * means the limit isn't checked. The pattern is matched against the path and
+ * query of the url. Since the regular expressions is joined, the groups of a
+ * rule gets other numbers, so backreferences and named groups is rejected.
+ */
+public final class LimitRules implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String REGEX_START = "^";
+	private static final String UNCHECKED_LIMIT = "-";
+	private static final String COMMENT = "#";
+
+	private static final int NO_RULE = Integer.MAX_VALUE;
+
+	private final List<LimitRule> rules;
+	private final TrieNode prefixes = new TrieNode();
+
+	/**
+	 * All regular expressions as alternatives of one pattern, or null.
+	 */
+	private final Pattern regexes;
+
+	/**
+	 * The group in the joined pattern for each regex rule, and its rule index.
+	 */
+	private final int[] regexGroups;
+	private final int[] regexRules;
+
+	private LimitRules(List<LimitRule> theRules) {
+		rules = theRules;
+
+		StringBuilder joined = new StringBuilder();
+		List<int[]> groups = new ArrayList<int[]>();
+		int group = 1;
+		for (int i = 0; i < rules.size(); i++) {
+			LimitRule rule = rules.get(i);
+			if (rule.isRegex()) {
+				if (joined.length() > 0)
+					joined.append('|');
+				joined.append('(').append(rule.getPattern()).append(')');
+				groups.add(new int[] { group, i });
+				// the groups of the rule itself comes after our own
+				group += 1 + Pattern.compile(rule.getPattern()).matcher("")
+						.groupCount();
+			} else
+				prefixes.add(rule.getPattern(), i);
+		}
+
+		regexes = groups.isEmpty() ? null : Pattern.compile(joined.toString());
+		regexGroups = new int[groups.size()];
+		regexRules = new int[groups.size()];
+		for (int i = 0; i < groups.size(); i++) {
+			regexGroups[i] = groups.get(i)[0];
+			regexRules[i] = groups.get(i)[1];
+		}
+	}
+
+	/**
+	 * Parse and compile the rules.
+	 * 
+	 * @param text
+	 *            the rules, one per line
+	 * @return the compiled rules
+	 * @throws IllegalArgumentException
+	 *             if a rule can't be parsed, the message tells which line
+	 */
+	public static LimitRules parse(String text) {
+		List<LimitRule> rules = new ArrayList<LimitRule>();
+		if (text != null) {
+			String[] lines = text.split("\r?\n");
+			for (int i = 0; i < lines.length; i++) {
+				String line = lines[i].trim();
+				if (line.length() == 0 || line.startsWith(COMMENT))
+					continue;
+				try {
+					rules.add(parseRule(line));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Line " + (i + 1)
+							+ " [" + line + "]: " + e.getMessage(), e);
+				}
+			}
+		}
+		return new LimitRules(Collections.unmodifiableList(rules));
+	}
+
+	private static LimitRule parseRule(String line) {
+		String[] parts = line.split("\\s+");
+		if (parts.length < 3 || parts.length > 4)
+			throw new IllegalArgumentException(
+					"A rule needs a pattern, max reads, max writes and optionally max time");
+
+		boolean isRegex = parts[0].startsWith(REGEX_START);
+		if (isRegex) {
+			try {
+				Pattern.compile(parts[0]);
+			} catch (PatternSyntaxException e) {
+				throw new IllegalArgumentException(e.getDescription());
+			}
+			if (hasGroupReference(parts[0]))
+				throw new IllegalArgumentException(
+						"Backreferences and named groups isn't supported in a rule");
+		}
+
+		return new LimitRule(parts[0], isRegex, parseLimit(parts[1]),
+				parseLimit(parts[2]), parts.length == 4 ? parseLimit(parts[3])
+						: PageCheck.NOT_CHECKED);
+	}
+
+	/**
+	 * Check if a regular expression refers to its own groups, by number like
+	 * \1 or by name. Quoted and escaped characters is skipped.
+	 */
+	static boolean hasGroupReference(String regex) {
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\' && i + 1 < regex.length()) {
+				char next = regex.charAt(++i);
+				if (next == 'Q') {
+					int end = regex.indexOf("\\E", i);
+					if (end == -1)
+						return false;
+					i = end + 1;
+				} else if ((next >= '1' && next <= '9') || next == 'k')
+					return true;
+			} else if (c == '(' && regex.startsWith("?<", i + 1)
+					&& i + 3 < regex.length() && regex.charAt(i + 3) != '='
+					&& regex.charAt(i + 3) != '!')
+				return true;
+		}
+		return false;
+	}
+
+	private static int parseLimit(String value) {
+		if (UNCHECKED_LIMIT.equals(value))
+			return PageCheck.NOT_CHECKED;
+		try {
+			int limit = Integer.parseInt(value);
+			if (limit >= 0)
+				return limit;
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		throw new IllegalArgumentException("The limit " + value
+				+ " isn't a positive number or " + UNCHECKED_LIMIT);
+	}
+
+	public List<LimitRule> getRules() {
+		return rules;
+	}
+
+	public boolean isEmpty() {
+		return rules.isEmpty();
+	}
+
+	/**
+	 * Get the first rule matching the url.
+	 * 
+	 * @param url
+	 *            the full url of the page
+	 * @return the rule or null if no rule matches
+	 */
+	public LimitRule match(String url) {
+		if (rules.isEmpty())
+			return null;
+
+		String path = getPath(url);
+		int best = prefixes.firstMatch(path);
+
+		// only run the regexes if one of them could come before the prefix
+		if (regexes != null && regexRules[0] < best) {
+			Matcher matcher = regexes.matcher(path);
+			if (matcher.lookingAt()) {
+				// the leftmost alternative that matches is the one used
+				for (int i = 0; i < regexGroups.length; i++) {
+					if (matcher.start(regexGroups[i]) != -1) {
+						best = Math.min(best, regexRules[i]);
+						break;
+					}
+				}
+			}
+		}
+
+		return best == NO_RULE ? null : rules.get(best);
+	}
+
+	/**
+	 * Get the path and query of an url, without parsing it into an URL.
+	 */
+	static String getPath(String url) {
+		int scheme = url.indexOf("://");
+		int start = url.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+		return start == -1 ? "/" : url.substring(start);
+	}
+
+	/**
+	 * A node in the prefix trie. The children is kept sorted by character in
+	 * two parallel arrays, so the trie is small even with many rules.
+	 */
+	private static final class TrieNode implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private char[] keys = new char[0];
+		private TrieNode[] children = new TrieNode[0];
+		private int rule = NO_RULE;
+
+		void add(String prefix, int theRule) {
+			TrieNode node = this;
+			for (int i = 0; i < prefix.length(); i++)
+				node = node.child(prefix.charAt(i));
+			// the same prefix twice, the first one wins
+			node.rule = Math.min(node.rule, theRule);
+		}
+
+		/**
+		 * Get the lowest rule index of all prefixes of the path.
+		 */
+		int firstMatch(String path) {
+			int best = rule;
+			TrieNode node = this;
+			for (int i = 0; i < path.length(); i++) {
+				node = node.get(path.charAt(i));
+				if (node == null)
+					break;
+				best = Math.min(best, node.rule);
+			}
+			return best;
+		}
+
+		private TrieNode get(char key) {
+			int index = Arrays.binarySearch(keys, key);
+			return index < 0 ? null : children[index];
+		}
+
+		private TrieNode child(char key) {
+			int index = Arrays.binarySearch(keys, key);
+			if (index >= 0)
+				return children[index];
+
+			int insert = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			TrieNode[] newChildren = new TrieNode[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			newKeys[insert] = key;
+			newChildren[insert] = new TrieNode();
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length
+					- insert);
+			System.arraycopy(children, insert, newChildren, insert + 1,
+					keys.length - insert);
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[insert];
+		}
+	}
+}
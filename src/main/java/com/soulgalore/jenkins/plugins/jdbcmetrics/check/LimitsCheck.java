@@ -0,0 +1,113 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * Check that a page doesn't do more database reads & writes than the
+ * configured max. If a limit rule matches the page, its limits is used
+ * instead.
+ */
+public class LimitsCheck implements PageCheck {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int maxReads;
+	private final int maxWrites;
+	private final LimitRules rules;
+
+	public LimitsCheck(int theMaxReads, int theMaxWrites) {
+		this(theMaxReads, theMaxWrites, LimitRules.parse(null));
+	}
+
+	public LimitsCheck(int theMaxReads, int theMaxWrites, LimitRules theRules) {
+		maxReads = theMaxReads;
+		maxWrites = theMaxWrites;
+		rules = theRules;
+	}
+
+	public String check(PageMetrics page) {
+		LimitRule rule = rules.match(page.getUrl());
+		if (rule == null) {
+			if (page.getReads() > maxReads || page.getWrites() > maxWrites)
+				return "The url " + page.getUrl()
+						+ " made too many database requests reads:"
+						+ page.getReads() + " writes:" + page.getWrites();
+			return null;
+		}
+
+		boolean tooManyRequests = isOver(page.getReads(), rule.getMaxReads())
+				|| isOver(page.getWrites(), rule.getMaxWrites());
+		boolean tooSlow = rule.getMaxTime() != NOT_CHECKED
+				&& getTime(page) > rule.getMaxTime();
+		if (!tooManyRequests && !tooSlow)
+			return null;
+
+		StringBuilder message = new StringBuilder("The url ").append(page
+				.getUrl());
+		if (tooManyRequests)
+			message.append(" made too many database requests reads:")
+					.append(page.getReads()).append(" writes:")
+					.append(page.getWrites());
+		if (tooSlow)
+			message.append(tooManyRequests ? " and" : "")
+					.append(" spent too long time in the database time:")
+					.append(getTime(page));
+		return message.append(" (rule ").append(rule).append(')').toString();
+	}
+
+	/**
+	 * Get how many reads & writes the page did above the limits used for it,
+	 * the ones of the matching rule or else the configured max. A limit that
+	 * isn't checked has no excess.
+	 * 
+	 * @param page
+	 *            the metrics of the page
+	 * @return the number of requests above the limits, or 0
+	 */
+	public long getExcess(PageMetrics page) {
+		LimitRule rule = rules.match(page.getUrl());
+		if (rule == null)
+			return excess(page.getReads(), maxReads)
+					+ excess(page.getWrites(), maxWrites);
+		return excess(page.getReads(), rule.getMaxReads())
+				+ excess(page.getWrites(), rule.getMaxWrites());
+	}
+
+	private static long excess(int value, int limit) {
+		if (limit == NOT_CHECKED)
+			return 0;
+		return Math.max(0L, (long) value - limit);
+	}
+
+	private static boolean isOver(int value, int limit) {
+		return limit != NOT_CHECKED && value > limit;
+	}
+
+	/**
+	 * The database time of the page, a time that wasn't sent counts as zero.
+	 */
+	private static int getTime(PageMetrics page) {
+		return Math.max(0, page.getReadTime())
+				+ Math.max(0, page.getWriteTime());
+	}
+}
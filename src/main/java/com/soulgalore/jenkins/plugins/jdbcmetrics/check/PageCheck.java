@@ -0,0 +1,47 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import java.io.Serializable;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * A check that a page needs to pass, else the build fails. Pages missing the
+ * JDBCMetrics headers are never checked. The checks is sent to the node
+ * measuring the pages when failing fast.
+ */
+public interface PageCheck extends Serializable {
+
+	/**
+	 * A max or limit that isn't checked.
+	 */
+	public static final int NOT_CHECKED = -1;
+
+	/**
+	 * Check a page.
+	 * 
+	 * @param page
+	 *            the metrics of the page
+	 * @return why the page failed, or null if it is ok
+	 */
+	public String check(PageMetrics page);
+}
@@ -0,0 +1,133 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStore;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * Check that a page hasn't got worse compared with the same url in a
+ * reference build. A page fails if the reads, writes or database time (read
+ * time + write time) has grown more than the absolute delta, or more than the
+ * relative delta in percent (of a value above zero). A delta that is
+ * {@link PageCheck#NOT_CHECKED} is not checked. Pages that didn't exist in
+ * the reference build always pass.
+ */
+public class RegressionCheck implements PageCheck {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<String, PageMetrics> baseline;
+	private final int baselineBuild;
+	private final int maxReadsDelta;
+	private final int maxWritesDelta;
+	private final int maxTimeDelta;
+	private final int maxRelativeDelta;
+
+	public RegressionCheck(Map<String, PageMetrics> theBaseline,
+			int theBaselineBuild, int theMaxReadsDelta, int theMaxWritesDelta,
+			int theMaxTimeDelta, int theMaxRelativeDelta) {
+		baseline = theBaseline;
+		baselineBuild = theBaselineBuild;
+		maxReadsDelta = theMaxReadsDelta;
+		maxWritesDelta = theMaxWritesDelta;
+		maxTimeDelta = theMaxTimeDelta;
+		maxRelativeDelta = theMaxRelativeDelta;
+	}
+
+	/**
+	 * Load the metrics of the reference build and index them by url.
+	 * 
+	 * @param metricsFile
+	 *            the metrics file of the reference build
+	 * @param theBaselineBuild
+	 *            the number of the reference build
+	 * @return the check
+	 * @throws IOException
+	 *             if the metrics couldn't be read
+	 */
+	public static RegressionCheck load(File metricsFile, int theBaselineBuild,
+			int theMaxReadsDelta, int theMaxWritesDelta, int theMaxTimeDelta,
+			int theMaxRelativeDelta) throws IOException {
+		List<PageMetrics> pages = MetricsStore.readPages(metricsFile);
+		Map<String, PageMetrics> theBaseline = new HashMap<String, PageMetrics>(
+				pages.size() * 4 / 3 + 1);
+		for (PageMetrics page : pages) {
+			theBaseline.put(page.getUrl(), page);
+		}
+		return new RegressionCheck(theBaseline, theBaselineBuild,
+				theMaxReadsDelta, theMaxWritesDelta, theMaxTimeDelta,
+				theMaxRelativeDelta);
+	}
+
+	public String check(PageMetrics page) {
+		PageMetrics before = baseline.get(page.getUrl());
+		if (before == null)
+			return null;
+
+		StringBuilder failure = new StringBuilder();
+		check("reads", before.getReads(), page.getReads(), maxReadsDelta,
+				failure);
+		check("writes", before.getWrites(), page.getWrites(), maxWritesDelta,
+				failure);
+		check("db time (ms)", getTime(before), getTime(page), maxTimeDelta,
+				failure);
+
+		if (failure.length() == 0)
+			return null;
+		return "The url " + page.getUrl() + " got worse than in build #"
+				+ baselineBuild + ":" + failure;
+	}
+
+	public int getBaselineBuild() {
+		return baselineBuild;
+	}
+
+	private void check(String name, int before, int now, int maxDelta,
+			StringBuilder failure) {
+		if (before == PageMetrics.NOT_SET || now == PageMetrics.NOT_SET)
+			return;
+		int delta = now - before;
+		if (delta <= 0)
+			return;
+		boolean isFailure = maxDelta != NOT_CHECKED && delta > maxDelta;
+		// growing from zero is only checked by the absolute delta
+		if (maxRelativeDelta != NOT_CHECKED && before > 0
+				&& delta * 100L > (long) before * maxRelativeDelta)
+			isFailure = true;
+		if (isFailure)
+			failure.append(" " + name + " " + before + " -> " + now);
+	}
+
+	private static int getTime(PageMetrics page) {
+		if (page.getReadTime() == PageMetrics.NOT_SET
+				&& page.getWriteTime() == PageMetrics.NOT_SET)
+			return PageMetrics.NOT_SET;
+		return Math.max(0, page.getReadTime())
+				+ Math.max(0, page.getWriteTime());
+	}
+}
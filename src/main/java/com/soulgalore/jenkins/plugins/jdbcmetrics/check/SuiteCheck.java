@@ -0,0 +1,48 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+
+/**
+ * A check of all the tested pages together.
+ */
+public interface SuiteCheck {
+
+	/**
+	 * The name of the check, used as the name of the test case.
+	 */
+	String getName();
+
+	/**
+	 * The value the check is made on, used as the status of the test case.
+	 */
+	String getStatus(MetricsStatistics stats);
+
+	/**
+	 * Check the statistics of all pages.
+	 * 
+	 * @param stats
+	 *            the statistics
+	 * @return the failure message, or null if the check passed
+	 */
+	String check(MetricsStatistics stats);
+}
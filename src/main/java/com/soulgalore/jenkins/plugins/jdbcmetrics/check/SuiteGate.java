@@ -0,0 +1,105 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.Statistic;
+
+/**
+ * Fail when a value over all pages, like the 90 percentile read time, is
+ * above a max. A gate where no page sent the value passes.
+ */
+public class SuiteGate implements SuiteCheck {
+
+	/**
+	 * What the gate measures, all in milliseconds.
+	 */
+	public enum Measure {
+		PERCENTILE90_READ_TIME("90 percentile read time") {
+			@Override
+			double getValue(MetricsStatistics stats) {
+				return percentile90(stats.getReadTime());
+			}
+		},
+		PERCENTILE90_WRITE_TIME("90 percentile write time") {
+			@Override
+			double getValue(MetricsStatistics stats) {
+				return percentile90(stats.getWriteTime());
+			}
+		},
+		TOTAL_TIME("total database time") {
+			@Override
+			double getValue(MetricsStatistics stats) {
+				if (stats.getReadTime().getCount() == 0
+						&& stats.getWriteTime().getCount() == 0)
+					return Double.NaN;
+				return stats.getReadTime().getSum()
+						+ stats.getWriteTime().getSum();
+			}
+		};
+
+		private final String description;
+
+		private Measure(String theDescription) {
+			description = theDescription;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		/**
+		 * Get the value, NaN if no page sent it.
+		 */
+		abstract double getValue(MetricsStatistics stats);
+
+		private static double percentile90(Statistic statistic) {
+			return statistic.getCount() == 0 ? Double.NaN : statistic
+					.getPercentile90();
+		}
+	}
+
+	private final Measure measure;
+	private final long max;
+
+	public SuiteGate(Measure theMeasure, long theMax) {
+		measure = theMeasure;
+		max = theMax;
+	}
+
+	public String getName() {
+		return measure.getDescription() + " max " + max + " ms";
+	}
+
+	public String getStatus(MetricsStatistics stats) {
+		double value = measure.getValue(stats);
+		return Double.isNaN(value) ? "" : measure.getDescription() + ":"
+				+ Math.round(value);
+	}
+
+	public String check(MetricsStatistics stats) {
+		double value = measure.getValue(stats);
+		if (!Double.isNaN(value) && value > max)
+			return "The " + measure.getDescription() + " of all pages was "
+					+ Math.round(value) + " ms, the max is " + max + " ms";
+		return null;
+	}
+}
@@ -0,0 +1,56 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+
+/**
+ * Mark the result as incomplete when the time budget ran out before all pages
+ * was measured, and fail it if configured to.
+ */
+public class TimeBudgetCheck implements SuiteCheck {
+
+	private final int minutes;
+	private final boolean ranOut;
+	private final boolean failIncomplete;
+
+	public TimeBudgetCheck(int theMinutes, boolean isRanOut,
+			boolean isFailIncomplete) {
+		minutes = theMinutes;
+		ranOut = isRanOut;
+		failIncomplete = isFailIncomplete;
+	}
+
+	public String getName() {
+		return "time budget " + minutes + " minutes";
+	}
+
+	public String getStatus(MetricsStatistics stats) {
+		return ranOut ? "incomplete" : "complete";
+	}
+
+	public String check(MetricsStatistics stats) {
+		if (ranOut && failIncomplete)
+			return "The time budget of " + minutes
+					+ " minutes ran out before all pages was measured";
+		return null;
+	}
+}
@@ -0,0 +1,56 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * Check that a page doesn't spend more time reading from and writing to the
+ * database than the configured max. A max that is
+ * {@link PageCheck#NOT_CHECKED} isn't checked, and neither is a time the
+ * server didn't send.
+ */
+public class TimeCheck implements PageCheck {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int maxReadTime;
+	private final int maxWriteTime;
+
+	public TimeCheck(int theMaxReadTime, int theMaxWriteTime) {
+		maxReadTime = theMaxReadTime;
+		maxWriteTime = theMaxWriteTime;
+	}
+
+	public String check(PageMetrics page) {
+		if (isOver(page.getReadTime(), maxReadTime)
+				|| isOver(page.getWriteTime(), maxWriteTime))
+			return "The url " + page.getUrl()
+					+ " spent too long time in the database read time:"
+					+ page.getReadTime() + " write time:"
+					+ page.getWriteTime();
+		return null;
+	}
+
+	private static boolean isOver(int time, int max) {
+		return max != NOT_CHECKED && time != PageMetrics.NOT_SET && time > max;
+	}
+}
@@ -0,0 +1,153 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import hudson.model.TaskListener;
+import hudson.remoting.Callable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.soulgalore.crawler.core.Crawler;
+import com.soulgalore.crawler.core.CrawlerConfiguration;
+import com.soulgalore.crawler.core.CrawlerResult;
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Cancellation;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.FetcherModule;
+
+/**
+ * Only crawl the site and send back the urls, used when the pages is
+ * measured in shards on other nodes. The crawler only tells the urls when it
+ * is done and fetches every duplicate url, so there is no time budget and no
+ * canonical urls: with those the first build measures while crawling on its
+ * own node instead. Sends back null if the crawl was stopped, like when the
+ * build is aborted.
+ */
+public class CrawlTask implements Callable<UrlFrontier, IOException> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Properties crawlerProperties;
+	private final String url;
+	private final int level;
+	private final String headerName;
+	private final String followPath;
+	private final String notFollowPath;
+	private final TaskListener listener;
+
+	public CrawlTask(Properties theCrawlerProperties, String theUrl,
+			int theLevel, String theHeaderName, String theFollowPath,
+			String theNotFollowPath, TaskListener theListener) {
+		crawlerProperties = theCrawlerProperties;
+		url = theUrl;
+		level = theLevel;
+		headerName = theHeaderName;
+		followPath = theFollowPath;
+		notFollowPath = theNotFollowPath;
+		listener = theListener;
+	}
+
+	public UrlFrontier call() throws IOException {
+		Injector injector = Guice.createInjector(FetcherModule
+				.withCrawler(crawlerProperties));
+		Crawler crawler = injector.getInstance(Crawler.class);
+		try {
+			CrawlerResult result = crawl(crawler, url, level, headerName,
+					followPath, notFollowPath, new Cancellation(Long.MAX_VALUE));
+			if (result == null) {
+				listener.getLogger().println("The crawl was stopped");
+				return null;
+			}
+
+			// the urls that didn't work is measured again by the shards, so
+			// they end up in the reports
+			Map<String, PageURL> urls = new LinkedHashMap<String, PageURL>();
+			for (PageURL pageURL : result.getUrls())
+				urls.put(pageURL.getUrl(), pageURL);
+			for (HTMLPageResponse response : result.getNonWorkingUrls())
+				urls.put(response.getPageUrl().getUrl(), response.getPageUrl());
+
+			listener.getLogger().println(
+					"Crawled " + urls.size() + " urls to measure in shards");
+			return UrlFrontier.fromCrawl(url, level, followPath,
+					notFollowPath, new ArrayList<PageURL>(urls.values()));
+		} finally {
+			crawler.shutdown();
+		}
+	}
+
+	static CrawlerResult crawl(Crawler crawler, String url, int level,
+			String headerName, String followPath, String notFollowPath) {
+
+		CrawlerConfiguration configuration = CrawlerConfiguration.builder()
+				.setMaxLevels(level).setVerifyUrls(false)
+				.setOnlyOnPath(followPath).setNotOnPath(notFollowPath)
+				.setRequestHeaders(headerName + ":true").setStartUrl(url)
+				.build();
+
+		return crawler.getUrls(configuration);
+	}
+
+	/**
+	 * Crawl, but give up when cancelled or at the deadline. The crawler can't
+	 * tell the urls it found so far, so nothing is returned then, and the
+	 * requests on their way is cancelled when the crawler is shut down.
+	 * 
+	 * @return the result, or null if the crawl was stopped
+	 */
+	static CrawlerResult crawl(final Crawler crawler, final String url,
+			final int level, final String headerName, final String followPath,
+			final String notFollowPath, Cancellation cancellation) {
+
+		FutureTask<CrawlerResult> task = new FutureTask<CrawlerResult>(
+				new java.util.concurrent.Callable<CrawlerResult>() {
+					public CrawlerResult call() {
+						return crawl(crawler, url, level, headerName,
+								followPath, notFollowPath);
+					}
+				});
+		// a daemon, so a crawl that never ends can't keep the node alive
+		Thread thread = new Thread(task, "jdbcmetrics-crawl");
+		thread.setDaemon(true);
+		thread.start();
+
+		try {
+			if (cancellation.await(task))
+				return task.get();
+			task.cancel(true);
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			task.cancel(true);
+			return null;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
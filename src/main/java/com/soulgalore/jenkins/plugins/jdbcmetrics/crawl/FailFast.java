@@ -0,0 +1,164 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import hudson.remoting.VirtualChannel;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.PageCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Cancellation;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsSink;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * Check every page as soon as it is measured and stop the crawl and the fetch
+ * when a number of pages failed, the build will fail anyway. A page missing
+ * the JDBCMetrics headers fails, the same way as in the JUnit report. The
+ * failing pages is counted together by all sinks of the settings, and by all
+ * shards when the settings is {@link #exportTo(VirtualChannel) exported}.
+ */
+public final class FailFast implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * How often (ms) a sink asks for the failures of the other shards.
+	 */
+	private static final long POLL_INTERVAL = 1000;
+
+	private final List<PageCheck> checks;
+	private final int maxFailures;
+	private final FailureCount count;
+
+	/**
+	 * Create the settings.
+	 *
+	 * @param theChecks
+	 *            the checks a page needs to pass
+	 * @param theMaxFailures
+	 *            the number of failing pages that stops the measuring
+	 */
+	public FailFast(List<PageCheck> theChecks, int theMaxFailures) {
+		this(theChecks, Math.max(1, theMaxFailures), new LocalCount());
+	}
+
+	private FailFast(List<PageCheck> theChecks, int theMaxFailures,
+			FailureCount theCount) {
+		checks = theChecks;
+		maxFailures = theMaxFailures;
+		count = theCount;
+	}
+
+	/**
+	 * Get the settings to send to a shard over a channel. The failures is
+	 * still counted here, so all shards stop when the failing pages of all of
+	 * them reaches the max.
+	 * 
+	 * @param channel
+	 *            the channel of the node measuring the shard
+	 * @return the settings, counting on this side of the channel
+	 */
+	public FailFast exportTo(VirtualChannel channel) {
+		return new FailFast(checks, maxFailures, channel.export(
+				FailureCount.class, count));
+	}
+
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Get a sink checking the metrics of every page, next to the collector of
+	 * the pipeline, so a sampled page is checked once on its merged metrics.
+	 * A sink stops when the failing pages of all sinks reaches the max: at
+	 * once when one of its own pages fails, else when the next page arrives
+	 * and it asks for the failures of the others, at most once per second so
+	 * a passing page doesn't cost a call to the master.
+	 *
+	 * @param cancellation
+	 *            cancelled when too many pages failed
+	 * @return the sink
+	 */
+	public MetricsSink sink(final Cancellation cancellation) {
+		return new MetricsSink() {
+			private volatile long nextPoll;
+
+			public void add(PageMetrics page) {
+				int failures;
+				if (isFailure(page))
+					failures = count.increment();
+				else if (System.currentTimeMillis() >= nextPoll) {
+					nextPoll = System.currentTimeMillis() + POLL_INTERVAL;
+					failures = count.get();
+				} else
+					return;
+				if (failures >= maxFailures)
+					cancellation.cancel();
+			}
+		};
+	}
+
+	private boolean isFailure(PageMetrics page) {
+		if (page.isMissingHeaders())
+			return true;
+		for (PageCheck check : checks) {
+			if (check.check(page) != null)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The number of failing pages. An interface, so it can be exported to
+	 * the nodes measuring the shards.
+	 */
+	public interface FailureCount {
+
+		/**
+		 * Count one more failing page.
+		 * 
+		 * @return the failing pages so far
+		 */
+		int increment();
+
+		/**
+		 * @return the failing pages so far
+		 */
+		int get();
+	}
+
+	private static final class LocalCount implements FailureCount,
+			Serializable {
+		private static final long serialVersionUID = 1L;
+		private final AtomicInteger failures = new AtomicInteger();
+
+		public int increment() {
+			return failures.incrementAndGet();
+		}
+
+		public int get() {
+			return failures.get();
+		}
+	}
+}
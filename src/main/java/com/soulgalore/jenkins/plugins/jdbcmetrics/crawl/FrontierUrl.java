@@ -0,0 +1,72 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.Serializable;
+
+/**
+ * An url found by the crawl, the page it was first found on and the level
+ * of the crawl it was found at. The start url is at level 1 and has no
+ * referer. The url also remembers how many builds in a row it was gone.
+ */
+public final class FrontierUrl implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String url;
+	private final String referer;
+	private final int level;
+	private final int timesGone;
+
+	public FrontierUrl(String theUrl, String theReferer, int theLevel) {
+		this(theUrl, theReferer, theLevel, 0);
+	}
+
+	public FrontierUrl(String theUrl, String theReferer, int theLevel,
+			int theTimesGone) {
+		url = theUrl;
+		referer = theReferer;
+		level = theLevel;
+		timesGone = theTimesGone;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the url of the page linking to this url, or null
+	 */
+	public String getReferer() {
+		return referer;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return the number of builds in a row the url answered 404 or 410
+	 */
+	public int getTimesGone() {
+		return timesGone;
+	}
+}
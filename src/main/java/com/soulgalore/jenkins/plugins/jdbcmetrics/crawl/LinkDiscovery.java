@@ -0,0 +1,225 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.crawler.core.PageURLParser;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.ResponseListener;
+
+/**
+ * Find new urls while the pages of a stored frontier is measured. Only the
+ * start page, a part of the known pages and the new pages is parsed for
+ * links, the rest is just passed on. Which part is parsed moves a bit every
+ * build, so all pages gets parsed over a number of builds.
+ */
+public class LinkDiscovery implements ResponseListener {
+
+	/**
+	 * An url answering 404 or 410 this many builds in a row is removed, other
+	 * failing urls is kept so they keep failing the build until fixed.
+	 */
+	static final int MAX_TIMES_GONE = 3;
+
+	private final ResponseListener next;
+	private final PageURLParser parser;
+	private final UrlFrontier frontier;
+	private final String host;
+	private final Shard shard;
+	private final UrlCanonicalizer canonicalizer;
+
+	private final ConcurrentMap<String, FrontierUrl> known = new ConcurrentHashMap<String, FrontierUrl>();
+	private final Set<String> toParse = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	// true if the url was gone this build, false if it answered anything else
+	private final ConcurrentMap<String, Boolean> gone = new ConcurrentHashMap<String, Boolean>();
+	private final Set<String> found = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Queue<PageURL> discovered = new ConcurrentLinkedQueue<PageURL>();
+
+	/**
+	 * Create a discovery.
+	 * 
+	 * @param theNext
+	 *            the listener getting every response
+	 * @param theParser
+	 *            the parser finding the links of a page
+	 * @param theFrontier
+	 *            the urls found by earlier builds
+	 * @param percent
+	 *            how many percent of the known pages to parse for links
+	 * @param round
+	 *            changes which pages that is parsed, like the build number
+	 * @param theShard
+	 *            the part of the known pages measured here, or null for all
+	 * @param theCanonicalizer
+	 *            turns the found links into the urls to fetch
+	 */
+	public LinkDiscovery(ResponseListener theNext, PageURLParser theParser,
+			UrlFrontier theFrontier, int percent, int round, Shard theShard,
+			UrlCanonicalizer theCanonicalizer) {
+		next = theNext;
+		shard = theShard;
+		canonicalizer = theCanonicalizer;
+		parser = theParser;
+		frontier = theFrontier;
+		host = new PageURL(canonicalizer.canonicalize(theFrontier
+				.getStartUrl())).getHost();
+
+		int start = (int) ((round * (long) percent) % 100);
+		for (FrontierUrl stored : theFrontier.getUrls()) {
+			// the urls may be stored with other settings, measure each once
+			String canonical = canonicalizer.canonicalize(stored.getUrl());
+			FrontierUrl url = canonical.equals(stored.getUrl()) ? stored
+					: new FrontierUrl(canonical, stored.getReferer(),
+							stored.getLevel(), stored.getTimesGone());
+			if (known.putIfAbsent(url.getUrl(), url) != null)
+				continue;
+			if (!isOwned(url.getUrl()))
+				continue;
+			// the start page is where new pages is most likely linked from
+			if (url.getLevel() <= 1 || isSelected(url.getUrl(), percent, start))
+				toParse.add(url.getUrl());
+		}
+	}
+
+	private boolean isOwned(String url) {
+		return shard == null || shard.contains(url);
+	}
+
+	private static boolean isSelected(String url, int percent, int start) {
+		int bucket = (url.hashCode() & Integer.MAX_VALUE) % 100;
+		return (bucket - start + 100) % 100 < percent;
+	}
+
+	/**
+	 * @return the pages that is known and will be parsed for links
+	 */
+	public int getNrOfPagesToParse() {
+		return toParse.size();
+	}
+
+	public void onResponse(HTMLPageResponse response) {
+		next.onResponse(response);
+
+		String url = response.getPageUrl().getUrl();
+		gone.put(url, isGone(response.getResponseCode()));
+		if (!isOk(response.getResponseCode()))
+			return;
+
+		// sampled pages gets here more than once, only parse them once
+		if (!toParse.remove(url))
+			return;
+
+		FrontierUrl page = known.get(url);
+		if (page == null || page.getLevel() >= frontier.getMaxLevel()
+				|| !isHtml(response))
+			return;
+
+		for (PageURL parsed : parser.get(response)) {
+			// drop the duplicates before they cost a request
+			String canonical = canonicalizer.canonicalize(parsed.getUrl());
+			PageURL link = canonical.equals(parsed.getUrl()) ? parsed
+					: new PageURL(canonical, parsed.getReferer());
+			if (isFollowed(link)
+					&& known.putIfAbsent(link.getUrl(), new FrontierUrl(link
+							.getUrl(), url, page.getLevel() + 1)) == null) {
+				toParse.add(link.getUrl());
+				found.add(link.getUrl());
+				discovered.add(link);
+			}
+		}
+	}
+
+	/**
+	 * Get the urls found since the last call, they need to be measured too.
+	 * 
+	 * @return the new urls
+	 */
+	public List<PageURL> takeDiscovered() {
+		List<PageURL> urls = new ArrayList<PageURL>();
+		PageURL url;
+		while ((url = discovered.poll()) != null)
+			urls.add(url);
+		return urls;
+	}
+
+	/**
+	 * Get the frontier for the next build: all known urls measured here and
+	 * all new urls, except the ones that has been gone for
+	 * {@link #MAX_TIMES_GONE} builds.
+	 * 
+	 * @return the frontier
+	 */
+	public UrlFrontier getFrontier() {
+		List<FrontierUrl> urls = new ArrayList<FrontierUrl>(known.size());
+		for (FrontierUrl url : known.values()) {
+			if (!isOwned(url.getUrl()) && !found.contains(url.getUrl()))
+				continue;
+			Boolean isGone = gone.get(url.getUrl());
+			// urls not fetched this build keeps their count
+			int timesGone = isGone == null ? url.getTimesGone()
+					: isGone ? url.getTimesGone() + 1 : 0;
+			if (timesGone >= MAX_TIMES_GONE)
+				continue;
+			urls.add(timesGone == url.getTimesGone() ? url : new FrontierUrl(
+					url.getUrl(), url.getReferer(), url.getLevel(), timesGone));
+		}
+		return new UrlFrontier(frontier.getStartUrl(), frontier.getMaxLevel(),
+				frontier.getFollowPath(), frontier.getNotFollowPath(), urls);
+	}
+
+	/**
+	 * Follow the same links as the crawler: on the same host and matching the
+	 * path settings.
+	 */
+	private boolean isFollowed(PageURL link) {
+		if (link.isWrongSyntax() || !host.equals(link.getHost()))
+			return false;
+		if (!"".equals(frontier.getFollowPath())
+				&& !link.getUrl().contains(frontier.getFollowPath()))
+			return false;
+		return "".equals(frontier.getNotFollowPath())
+				|| !link.getUrl().contains(frontier.getNotFollowPath());
+	}
+
+	private static boolean isHtml(HTMLPageResponse response) {
+		return response.getResponseType() != null
+				&& response.getResponseType().contains("html");
+	}
+
+	private static boolean isGone(int responseCode) {
+		return responseCode == 404 || responseCode == 410;
+	}
+
+	private static boolean isOk(int responseCode) {
+		return responseCode >= 200 && responseCode < 400;
+	}
+}
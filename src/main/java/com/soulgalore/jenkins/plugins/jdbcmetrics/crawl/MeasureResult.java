@@ -0,0 +1,131 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+/**
+ * What a {@link MeasureTask} sends back from the node: the metrics of the
+ * pages, the statistics and the urls to store for the next build. If the
+ * time budget ran out or too many pages failed, the result only holds the
+ * pages measured until then.
+ */
+public final class MeasureResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<PageMetrics> metrics;
+	private final MetricsStatistics stats;
+	private final UrlFrontier frontier;
+	private final boolean complete;
+	private final boolean failedFast;
+
+	public MeasureResult(List<PageMetrics> theMetrics,
+			MetricsStatistics theStats, UrlFrontier theFrontier) {
+		this(theMetrics, theStats, theFrontier, true, false);
+	}
+
+	public MeasureResult(List<PageMetrics> theMetrics,
+			MetricsStatistics theStats, UrlFrontier theFrontier,
+			boolean isComplete, boolean isFailedFast) {
+		metrics = theMetrics;
+		stats = theStats;
+		frontier = theFrontier;
+		complete = isComplete;
+		failedFast = isFailedFast;
+	}
+
+	/**
+	 * Merge the results of the shards into one. A page measured by more than
+	 * one shard, like a new page linked from pages in different shards, is
+	 * only kept once.
+	 * 
+	 * @param results
+	 *            the results of all shards
+	 * @return the merged result
+	 */
+	public static MeasureResult merge(List<MeasureResult> results) {
+		Map<String, PageMetrics> pages = new LinkedHashMap<String, PageMetrics>();
+		Map<String, FrontierUrl> urls = new LinkedHashMap<String, FrontierUrl>();
+		UrlFrontier first = null;
+		boolean complete = true;
+		boolean failedFast = false;
+		for (MeasureResult result : results) {
+			complete &= result.isComplete();
+			failedFast |= result.isFailedFast();
+			for (PageMetrics page : result.getMetrics()) {
+				if (!pages.containsKey(page.getUrl()))
+					pages.put(page.getUrl(), page);
+			}
+			if (result.getFrontier() != null) {
+				if (first == null)
+					first = result.getFrontier();
+				for (FrontierUrl url : result.getFrontier().getUrls()) {
+					if (!urls.containsKey(url.getUrl()))
+						urls.put(url.getUrl(), url);
+				}
+			}
+		}
+
+		List<PageMetrics> metrics = new ArrayList<PageMetrics>(pages.values());
+		return new MeasureResult(metrics, MetricsStatistics.of(metrics),
+				first == null ? null : new UrlFrontier(first.getStartUrl(),
+						first.getMaxLevel(), first.getFollowPath(),
+						first.getNotFollowPath(), urls.values()), complete, failedFast);
+	}
+
+	public List<PageMetrics> getMetrics() {
+		return metrics;
+	}
+
+	public MetricsStatistics getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return the urls to store for the next build, or null if they shouldn't
+	 *         be stored
+	 */
+	public UrlFrontier getFrontier() {
+		return frontier;
+	}
+
+	/**
+	 * @return false if the measuring stopped before all pages was measured
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return true if the measuring stopped since too many pages failed
+	 */
+	public boolean isFailedFast() {
+		return failedFast;
+	}
+}
@@ -0,0 +1,415 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import hudson.model.TaskListener;
+import hudson.remoting.Callable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.soulgalore.crawler.core.Crawler;
+import com.soulgalore.crawler.core.CrawlerResult;
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.HTMLPageResponseFetcher;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.crawler.core.PageURLParser;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.AdaptiveResponseFetcher;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Cancellation;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Fetcher;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.FetcherModule;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.ResponseListener;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsCollector;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsPipeline;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsSink;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.SamplingPipeline;
+
+/**
+ * Crawl and measure the pages. The task runs on the node of the build, so
+ * the HTML is fetched and parsed there and only the metrics is sent back to
+ * Jenkins.
+ */
+public class MeasureTask implements Callable<MeasureResult, IOException> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The time budget of a build that may take as long as it takes.
+	 */
+	public static final long NO_TIME_BUDGET = Long.MAX_VALUE;
+
+	private final Properties crawlerProperties;
+	private final String url;
+	private final String urls;
+	private final int level;
+	private final String headerName;
+	private final String followPath;
+	private final String notFollowPath;
+	private final int samples;
+	private final int warmups;
+	private final boolean incremental;
+	private final UrlFrontier previous;
+	private final int rediscoverPercent;
+	private final int round;
+	private final Shard shard;
+	private final long timeBudget;
+	private final FailFast failFast;
+	private final UrlCanonicalizer canonicalizer;
+	private final UrlTemplates templates;
+	private final int perTemplate;
+	private final TaskListener listener;
+
+	/**
+	 * Create the task.
+	 * 
+	 * @param theCrawlerProperties
+	 *            the settings of the crawler and the HTTP client
+	 * @param theUrls
+	 *            a comma separated list of urls measured besides the crawl
+	 * @param theSamples
+	 *            the number of times every page is measured
+	 * @param theWarmups
+	 *            the number of fetches before a page is measured
+	 * @param isIncremental
+	 *            if the found urls should be sent back for the next build
+	 * @param thePrevious
+	 *            the urls found by the previous build, or null for a full
+	 *            crawl
+	 * @param theRediscoverPercent
+	 *            the percent of the previous urls parsed for new links
+	 * @param theRound
+	 *            the build number, changes which urls is parsed
+	 * @param theShard
+	 *            the part of the previous urls to measure, or null for all
+	 * @param theTimeBudget
+	 *            the max time (ms) of the crawl and the fetch, counted from
+	 *            when the task starts on the node, or {@link #NO_TIME_BUDGET}
+	 * @param theFailFast
+	 *            stop when this many pages failed, or null to measure all
+	 * @param theCanonicalizer
+	 *            turns the urls into the ones to fetch, so duplicates is only
+	 *            fetched once
+	 * @param theTemplates
+	 *            the templates to sample the urls by, or null to measure all
+	 *            urls
+	 * @param thePerTemplate
+	 *            the max number of urls measured per template
+	 * @param theListener
+	 *            the listener of the build, to log to the console
+	 */
+	public MeasureTask(Properties theCrawlerProperties, String theUrl,
+			String theUrls, int theLevel, String theHeaderName,
+			String theFollowPath, String theNotFollowPath, int theSamples,
+			int theWarmups, boolean isIncremental, UrlFrontier thePrevious,
+			int theRediscoverPercent, int theRound, Shard theShard,
+			long theTimeBudget, FailFast theFailFast,
+			UrlCanonicalizer theCanonicalizer, UrlTemplates theTemplates,
+			int thePerTemplate, TaskListener theListener) {
+		crawlerProperties = theCrawlerProperties;
+		url = theUrl;
+		urls = theUrls;
+		level = theLevel;
+		headerName = theHeaderName;
+		followPath = theFollowPath;
+		notFollowPath = theNotFollowPath;
+		samples = theSamples;
+		warmups = theWarmups;
+		incremental = isIncremental;
+		previous = thePrevious;
+		rediscoverPercent = theRediscoverPercent;
+		round = theRound;
+		shard = theShard;
+		timeBudget = theTimeBudget;
+		failFast = theFailFast;
+		canonicalizer = theCanonicalizer;
+		templates = theTemplates;
+		perTemplate = thePerTemplate;
+		listener = theListener;
+	}
+
+	public MeasureResult call() throws IOException {
+
+		// the clocks of the nodes may differ, so the deadline is set here
+		Cancellation cancellation = new Cancellation(getDeadline(timeBudget));
+
+		// one injector for the whole build, so the crawl and the fetch of the
+		// pages share the same HTTP client and keep alive connections
+		final Injector injector = Guice.createInjector(FetcherModule
+				.withCrawler(crawlerProperties));
+		final Crawler crawler = injector.getInstance(Crawler.class);
+		final Fetcher fetcher = injector.getInstance(Fetcher.class);
+
+		try {
+			MeasureResult result = crawlAndFetch(crawler, fetcher,
+					injector.getInstance(PageURLParser.class), cancellation,
+					listener.getLogger());
+			if (result.isFailedFast())
+				listener.getLogger().println(
+						prefix() + "Stopped after " + failFast.getMaxFailures()
+								+ " failing pages, measured "
+								+ result.getMetrics().size() + " pages");
+			else if (!result.isComplete())
+				listener.getLogger().println(
+						prefix() + "The time budget ran out, measured "
+								+ result.getMetrics().size() + " pages");
+			logConcurrency(injector.getInstance(HTMLPageResponseFetcher.class),
+					listener.getLogger());
+			return result;
+		} finally {
+			crawler.shutdown();
+			fetcher.shutdown();
+		}
+	}
+
+	private void logConcurrency(HTMLPageResponseFetcher responseFetcher,
+			PrintStream logger) {
+		if (responseFetcher instanceof AdaptiveResponseFetcher) {
+			AdaptiveResponseFetcher adaptive = (AdaptiveResponseFetcher) responseFetcher;
+			logger.println(prefix() + "Sent at most " + adaptive.getMaxUsed()
+					+ " requests at the same time, ended with a limit of "
+					+ adaptive.getLimit());
+		}
+	}
+
+	/**
+	 * Get the deadline of a time budget.
+	 * 
+	 * @param timeBudget
+	 *            the time budget in ms, or {@link #NO_TIME_BUDGET}
+	 * @return the deadline as in System.currentTimeMillis(), Long.MAX_VALUE
+	 *         if there is no budget
+	 */
+	static long getDeadline(long timeBudget) {
+		if (timeBudget == NO_TIME_BUDGET)
+			return Long.MAX_VALUE;
+		return System.currentTimeMillis() + Math.max(0, timeBudget);
+	}
+
+	private MeasureResult crawlAndFetch(Crawler crawler, Fetcher fetcher,
+			PageURLParser parser, Cancellation cancellation, PrintStream logger) {
+
+		Map<String, String> requestHeaders = new HashMap<String, String>();
+		requestHeaders.put(headerName, "true");
+
+		if (samples > 1 || warmups > 0)
+			logger.println(prefix() + "Fetching every page " + samples
+					+ " times after " + warmups + " warm ups");
+
+		MetricsCollector collector = new MetricsCollector();
+		MetricsSink[] sinks = failFast == null ? new MetricsSink[] { collector }
+				: new MetricsSink[] { collector, failFast.sink(cancellation) };
+		MetricsPipeline pipeline = new MetricsPipeline(sinks);
+		SamplingPipeline sampling = samples > 1 ? new SamplingPipeline(
+				samples, sinks) : null;
+		ResponseListener responseListener = sampling != null ? sampling
+				: pipeline;
+
+		Map<String, PageURL> theUrls = new LinkedHashMap<String, PageURL>();
+		UrlFrontier frontier;
+		boolean complete = true;
+
+		boolean isKnown = previous != null
+				&& previous.isCrawlOf(url, level, followPath, notFollowPath);
+		TemplateSampler sampler = templates == null ? null
+				: new TemplateSampler(templates, perTemplate, round);
+		// the crawler only tells the urls when it is done, so with a time
+		// budget the pages is measured while crawling, and the pages measured
+		// when the budget runs out is reported
+		boolean hasBudget = timeBudget != NO_TIME_BUDGET;
+		// the crawler fetches every duplicate of an url, so the links is
+		// canonicalized while crawling, before they cost a request
+		boolean isCanonical = canonicalizer != UrlCanonicalizer.NONE;
+		if (isKnown || failFast != null || sampler != null || hasBudget
+				|| isCanonical) {
+			// measure the urls we already know about and find new ones while
+			// doing it, instead of crawling the site before measuring. To
+			// fail fast, sample, keep a time budget or canonicalize without
+			// known urls, start with only the start url, so every page is
+			// checked as soon as it is found and the crawl never goes further
+			// than the sampled pages
+			UrlFrontier known = isKnown ? previous : UrlFrontier.fromCrawl(
+					url, level, followPath, notFollowPath,
+					Collections.singletonList(new PageURL(url)));
+			LinkDiscovery discovery = new LinkDiscovery(responseListener,
+					parser, known, isKnown ? rediscoverPercent : 100, round,
+					shard, canonicalizer);
+
+			for (FrontierUrl frontierUrl : known.getUrls()) {
+				PageURL pageURL = canonical(frontierUrl.getUrl(),
+						frontierUrl.getReferer());
+				if (shard != null && !shard.contains(pageURL.getUrl()))
+					continue;
+				if (sampler == null)
+					theUrls.put(pageURL.getUrl(), pageURL);
+				else
+					sampler.offer(pageURL);
+			}
+			if (sampler != null) {
+				for (PageURL sampled : sampler.take())
+					theUrls.put(sampled.getUrl(), sampled);
+			}
+
+			if (isKnown && sampler != null)
+				logger.println(prefix() + "Measuring " + theUrls.size()
+						+ " of the known urls, at most " + perTemplate
+						+ " per template");
+			else if (isKnown)
+				logger.println(prefix() + "Measuring " + theUrls.size()
+						+ " known urls, parsing "
+						+ discovery.getNrOfPagesToParse()
+						+ " of them for links");
+			else
+				logger.println(prefix()
+						+ "Measuring the pages while crawling, to "
+						+ (sampler != null ? "sample the templates"
+								: failFast != null ? "fail fast"
+										: hasBudget ? "keep the time budget"
+												: "skip the duplicate urls"));
+			addSpecificUrls(theUrls);
+
+			Set<PageURL> nextRound = new LinkedHashSet<PageURL>(
+					theUrls.values());
+			int nrOfNewUrls = 0;
+			while (!nextRound.isEmpty()) {
+				boolean fetched = fetcher.get(nextRound, requestHeaders,
+						warmups, samples, discovery, cancellation);
+				if (sampling != null)
+					sampling.flush();
+				if (!fetched) {
+					complete = false;
+					break;
+				}
+				nextRound = new LinkedHashSet<PageURL>();
+				List<PageURL> discovered = discovery.takeDiscovered();
+				if (sampler != null) {
+					for (PageURL found : discovered) {
+						if (!theUrls.containsKey(found.getUrl()))
+							sampler.offer(found);
+					}
+					discovered = sampler.take();
+				}
+				for (PageURL found : discovered) {
+					if (!theUrls.containsKey(found.getUrl())) {
+						theUrls.put(found.getUrl(), found);
+						nextRound.add(found);
+					}
+				}
+				nrOfNewUrls += nextRound.size();
+			}
+			logger.println(prefix() + "Found " + nrOfNewUrls + " new urls");
+			if (sampler != null)
+				logger.println(prefix() + "Sampled " + sampler.getNrOfTemplates()
+						+ " templates, skipped " + sampler.getNrOfSkipped()
+						+ " urls");
+			frontier = discovery.getFrontier();
+
+		} else {
+			// the crawl only collects the urls, every page is then measured
+			// and turned into metrics as soon as the response arrives
+			final CrawlerResult result = CrawlTask.crawl(crawler, url, level,
+					headerName, followPath, notFollowPath, cancellation);
+			if (result == null) {
+				// without a time budget the crawl only stops when the build
+				// is aborted, and the urls of the previous build is better
+				// than none for the next one
+				logger.println(prefix() + "The crawl was stopped");
+				List<PageMetrics> metrics = collector.getMetrics();
+				return new MeasureResult(metrics,
+						MetricsStatistics.of(metrics), null, false, false);
+			}
+
+			// the urls that didn't work is kept for the next build too, so
+			// they keep failing it until they are fixed
+			List<PageURL> crawledUrls = new ArrayList<PageURL>();
+			Set<String> nonWorkingUrls = new HashSet<String>();
+			for (HTMLPageResponse response : result.getNonWorkingUrls()) {
+				PageURL pageURL = response.getPageUrl();
+				if (nonWorkingUrls.add(pageURL.getUrl())) {
+					pipeline.onResponse(response);
+					crawledUrls.add(pageURL);
+				}
+			}
+
+			for (PageURL crawled : result.getUrls()) {
+				if (!nonWorkingUrls.contains(crawled.getUrl())
+						&& !theUrls.containsKey(crawled.getUrl())) {
+					theUrls.put(crawled.getUrl(), crawled);
+					crawledUrls.add(crawled);
+				}
+			}
+			frontier = UrlFrontier.fromCrawl(url, level, followPath,
+					notFollowPath, crawledUrls);
+
+			// should we also fetch specific urls?
+			addSpecificUrls(theUrls);
+
+			complete = fetcher.get(new LinkedHashSet<PageURL>(theUrls
+					.values()), requestHeaders, warmups, samples,
+					responseListener, cancellation);
+			if (sampling != null)
+				sampling.flush();
+		}
+
+		List<PageMetrics> metrics = collector.getMetrics();
+		return new MeasureResult(metrics, MetricsStatistics.of(metrics),
+				incremental ? frontier : null, complete,
+				cancellation.isCancelled());
+	}
+
+	private void addSpecificUrls(Map<String, PageURL> theUrls) {
+		if (urls != null) {
+			for (String string : urls.split(",")) {
+				if ("".equals(string.trim()))
+					continue;
+				String specific = canonicalizer.canonicalize(string.trim());
+				if (shard == null || shard.contains(specific))
+					theUrls.put(specific, new PageURL(specific));
+			}
+		}
+	}
+
+	/**
+	 * Get the page to fetch, the canonical url linked from the canonical
+	 * referer, so the levels of the urls is kept.
+	 */
+	private PageURL canonical(String theUrl, String referer) {
+		return new PageURL(canonicalizer.canonicalize(theUrl),
+				canonicalizer.canonicalize(referer));
+	}
+
+	private String prefix() {
+		return shard == null ? "" : "[shard " + shard + "] ";
+	}
+}
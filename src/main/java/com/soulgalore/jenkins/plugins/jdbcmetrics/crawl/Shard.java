@@ -0,0 +1,68 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.Serializable;
+
+/**
+ * One part of the urls when the pages is measured on more than one node. An
+ * url belongs to the shard of the hash of its path, so the same page is
+ * measured by the same shard every build.
+ */
+public final class Shard implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int index;
+	private final int count;
+
+	public Shard(int theIndex, int theCount) {
+		index = theIndex;
+		count = theCount;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Check if the url belongs to this shard.
+	 * 
+	 * @param url
+	 *            the full url
+	 * @return true if this shard measures the url
+	 */
+	public boolean contains(String url) {
+		int scheme = url.indexOf("://");
+		int start = url.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+		String path = start == -1 ? "/" : url.substring(start);
+		return (path.hashCode() & Integer.MAX_VALUE) % count == index;
+	}
+
+	@Override
+	public String toString() {
+		return (index + 1) + "/" + count;
+	}
+}
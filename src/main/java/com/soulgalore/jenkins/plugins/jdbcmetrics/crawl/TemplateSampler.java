@@ -0,0 +1,149 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.soulgalore.crawler.core.PageURL;
+
+/**
+ * Pick at most a number of urls of every template, so a site with millions
+ * of pages of the same kind is measured in a bounded time and every kind of
+ * page is still measured. The urls is offered a round at a time, as they are
+ * found, and every template keeps a random sample (reservoir sampling) of
+ * the urls offered in the round. Later rounds fills up the templates that
+ * has room left.
+ */
+public class TemplateSampler {
+
+	private final UrlTemplates templates;
+	private final int perTemplate;
+	private final Random random;
+
+	private final Map<String, Reservoir> reservoirs = new HashMap<String, Reservoir>();
+	private final Set<String> offered = new HashSet<String>();
+
+	/**
+	 * Create a sampler.
+	 *
+	 * @param theTemplates
+	 *            groups the urls by template
+	 * @param thePerTemplate
+	 *            the max number of urls of a template
+	 * @param seed
+	 *            the seed of the random sample, like the build number
+	 */
+	public TemplateSampler(UrlTemplates theTemplates, int thePerTemplate,
+			long seed) {
+		templates = theTemplates;
+		perTemplate = Math.max(1, thePerTemplate);
+		random = new Random(seed);
+	}
+
+	/**
+	 * Offer an url to the sample of its template. An url offered before is
+	 * skipped.
+	 *
+	 * @param url
+	 *            the url
+	 */
+	public void offer(PageURL url) {
+		if (!offered.add(url.getUrl()))
+			return;
+
+		String template = templates.getTemplate(url.getUrl());
+		Reservoir reservoir = reservoirs.get(template);
+		if (reservoir == null) {
+			reservoir = new Reservoir();
+			reservoirs.put(template, reservoir);
+		}
+		reservoir.offer(url, perTemplate, random);
+	}
+
+	/**
+	 * Take the urls picked in this round, they are measured and count as the
+	 * urls of their templates in the next rounds.
+	 *
+	 * @return the picked urls
+	 */
+	public List<PageURL> take() {
+		List<PageURL> picked = new ArrayList<PageURL>();
+		for (Reservoir reservoir : reservoirs.values())
+			reservoir.take(picked);
+		return picked;
+	}
+
+	/**
+	 * @return the number of templates of the offered urls
+	 */
+	public int getNrOfTemplates() {
+		return reservoirs.size();
+	}
+
+	/**
+	 * @return the number of offered urls not picked
+	 */
+	public int getNrOfSkipped() {
+		int skipped = 0;
+		for (Reservoir reservoir : reservoirs.values())
+			skipped += reservoir.seen - reservoir.picked;
+		return skipped;
+	}
+
+	/**
+	 * The urls of one template.
+	 */
+	private static final class Reservoir {
+		private final List<PageURL> round = new ArrayList<PageURL>();
+		private int seenThisRound;
+		private int seen;
+		private int picked;
+
+		private void offer(PageURL url, int perTemplate, Random random) {
+			seen++;
+			int room = perTemplate - picked;
+			if (room <= 0)
+				return;
+			seenThisRound++;
+			if (round.size() < room)
+				round.add(url);
+			else {
+				// keeps every url of the round with the same probability
+				int index = random.nextInt(seenThisRound);
+				if (index < room)
+					round.set(index, url);
+			}
+		}
+
+		private void take(List<PageURL> urls) {
+			urls.addAll(round);
+			picked += round.size();
+			round.clear();
+			seenThisRound = 0;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turn the urls that gives the same page into one url, so a page is only
+ * fetched and measured once. The scheme and the host is always lower cased,
+ * the default port and the fragment removed. Depending on the settings the
+ * query parameters is filtered and sorted, the path lower cased and a
+ * trailing slash removed.
+ */
+public final class UrlCanonicalizer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Keeps every url as it is.
+	 */
+	public static final UrlCanonicalizer NONE = new UrlCanonicalizer();
+
+	/**
+	 * A parameter name ending with this matches all names starting with the
+	 * rest, like utm_*.
+	 */
+	private static final String WILDCARD = "*";
+
+	private final boolean enabled;
+	private final Set<String> ignored = new HashSet<String>();
+	private final List<String> ignoredPrefixes = new ArrayList<String>();
+	private final Set<String> kept = new HashSet<String>();
+	private final List<String> keptPrefixes = new ArrayList<String>();
+	private final boolean sortParams;
+	private final boolean lowerCasePath;
+	private final boolean removeTrailingSlash;
+
+	private UrlCanonicalizer() {
+		enabled = false;
+		sortParams = false;
+		lowerCasePath = false;
+		removeTrailingSlash = false;
+	}
+
+	/**
+	 * Create a canonicalizer.
+	 *
+	 * @param ignoredParams
+	 *            comma separated names of the parameters to remove
+	 * @param keptParams
+	 *            comma separated names of the only parameters to keep, empty
+	 *            to keep all but the ignored
+	 * @param isSortParams
+	 *            if the parameters should be sorted by name
+	 * @param isLowerCasePath
+	 *            if the path should be lower cased
+	 * @param isRemoveTrailingSlash
+	 *            if a slash ending the path should be removed
+	 */
+	public UrlCanonicalizer(String ignoredParams, String keptParams,
+			boolean isSortParams, boolean isLowerCasePath,
+			boolean isRemoveTrailingSlash) {
+		enabled = true;
+		parseNames(ignoredParams, ignored, ignoredPrefixes);
+		parseNames(keptParams, kept, keptPrefixes);
+		sortParams = isSortParams;
+		lowerCasePath = isLowerCasePath;
+		removeTrailingSlash = isRemoveTrailingSlash;
+	}
+
+	private static void parseNames(String names, Set<String> exact,
+			List<String> prefixes) {
+		if (names == null)
+			return;
+		for (String name : names.split(",")) {
+			name = name.trim();
+			if ("".equals(name))
+				continue;
+			if (name.endsWith(WILDCARD))
+				prefixes.add(name.substring(0, name.length()
+						- WILDCARD.length()));
+			else
+				exact.add(name);
+		}
+	}
+
+	/**
+	 * Get the canonical form of an url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the canonical url, or the url as it is if it isn't an absolute
+	 *         http(s) url
+	 */
+	public String canonicalize(String url) {
+		if (!enabled || url == null)
+			return url;
+
+		int schemeEnd = url.indexOf("://");
+		if (schemeEnd <= 0)
+			return url;
+
+		int end = url.indexOf('#');
+		if (end == -1)
+			end = url.length();
+		int queryStart = url.indexOf('?');
+		if (queryStart > end)
+			queryStart = -1;
+		int pathStart = url.indexOf('/', schemeEnd + 3);
+		int authorityEnd = queryStart == -1 ? end : queryStart;
+		if (pathStart == -1 || pathStart > authorityEnd)
+			pathStart = authorityEnd;
+
+		String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+		StringBuilder canonical = new StringBuilder(url.length());
+		canonical.append(scheme).append("://");
+		canonical.append(withoutDefaultPort(scheme,
+				url.substring(schemeEnd + 3, pathStart)
+						.toLowerCase(Locale.ENGLISH)));
+
+		String path = url.substring(pathStart, authorityEnd);
+		if (lowerCasePath)
+			path = path.toLowerCase(Locale.ENGLISH);
+		while (removeTrailingSlash && path.length() > 1 && path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+		canonical.append(path.length() == 0 ? "/" : path);
+
+		if (queryStart != -1)
+			appendQuery(url.substring(queryStart + 1, end), canonical);
+		return canonical.toString();
+	}
+
+	private void appendQuery(String query, StringBuilder canonical) {
+		List<String> params = new ArrayList<String>();
+		for (String param : query.split("&")) {
+			if (!"".equals(param) && isKept(getName(param)))
+				params.add(param);
+		}
+		if (params.isEmpty())
+			return;
+		if (sortParams)
+			Collections.sort(params);
+
+		canonical.append('?');
+		for (int i = 0; i < params.size(); i++) {
+			if (i > 0)
+				canonical.append('&');
+			canonical.append(params.get(i));
+		}
+	}
+
+	private boolean isKept(String name) {
+		if (matches(name, ignored, ignoredPrefixes))
+			return false;
+		return kept.isEmpty() && keptPrefixes.isEmpty()
+				|| matches(name, kept, keptPrefixes);
+	}
+
+	private static boolean matches(String name, Set<String> exact,
+			List<String> prefixes) {
+		if (exact.contains(name))
+			return true;
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	private static String getName(String param) {
+		int equals = param.indexOf('=');
+		return equals == -1 ? param : param.substring(0, equals);
+	}
+
+	private static String withoutDefaultPort(String scheme, String authority) {
+		if (("http".equals(scheme) && authority.endsWith(":80"))
+				|| ("https".equals(scheme) && authority.endsWith(":443")))
+			return authority.substring(0, authority.lastIndexOf(':'));
+		return authority;
+	}
+
+	/**
+	 * Replace the serialized {@link #NONE} with the constant.
+	 */
+	private Object readResolve() {
+		return enabled ? this : NONE;
+	}
+}
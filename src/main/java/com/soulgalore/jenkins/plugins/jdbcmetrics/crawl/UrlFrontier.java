@@ -0,0 +1,289 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.StoreCodec;
+
+/**
+ * The urls a crawl found and the link graph between them, stored per job so
+ * the next build can start from them instead of crawling the whole site. The
+ * frontier remembers the settings of the crawl, and is only reused by a build
+ * with the same settings.
+ */
+public final class UrlFrontier implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The name of the file in the job directory.
+	 */
+	public static final String FILENAME = "jdbcmetrics-frontier.bin";
+
+	private static final int MAGIC = 0x4a444246;
+	private static final int VERSION = 1;
+
+	private final String startUrl;
+	private final int maxLevel;
+	private final String followPath;
+	private final String notFollowPath;
+	private final List<FrontierUrl> urls;
+
+	public UrlFrontier(String theStartUrl, int theMaxLevel,
+			String theFollowPath, String theNotFollowPath,
+			Collection<FrontierUrl> theUrls) {
+		startUrl = theStartUrl;
+		maxLevel = theMaxLevel;
+		followPath = nullToEmpty(theFollowPath);
+		notFollowPath = nullToEmpty(theNotFollowPath);
+		urls = Collections.unmodifiableList(new ArrayList<FrontierUrl>(
+				theUrls));
+	}
+
+	/**
+	 * Create the frontier of a full crawl. The crawler only tells which page
+	 * an url was found on, so the level of every url is calculated from the
+	 * chain of referers back to the start url.
+	 * 
+	 * @param theUrls
+	 *            the urls of the crawl, the failing ones too
+	 * @return the frontier
+	 */
+	public static UrlFrontier fromCrawl(String theStartUrl, int theMaxLevel,
+			String theFollowPath, String theNotFollowPath,
+			Collection<PageURL> theUrls) {
+
+		Map<String, String> referers = new HashMap<String, String>();
+		for (PageURL pageURL : theUrls)
+			referers.put(pageURL.getUrl(), emptyToNull(pageURL.getReferer()));
+
+		Map<String, Integer> levels = new HashMap<String, Integer>();
+		List<FrontierUrl> frontierUrls = new ArrayList<FrontierUrl>(
+				theUrls.size());
+		for (PageURL pageURL : theUrls) {
+			frontierUrls.add(new FrontierUrl(pageURL.getUrl(), referers
+					.get(pageURL.getUrl()), level(pageURL.getUrl(), referers,
+					levels, theMaxLevel)));
+		}
+		return new UrlFrontier(theStartUrl, theMaxLevel, theFollowPath,
+				theNotFollowPath, frontierUrls);
+	}
+
+	private static int level(String url, Map<String, String> referers,
+			Map<String, Integer> levels, int maxLevel) {
+
+		// walk up to the start url or a page we already know the level of
+		List<String> chain = new ArrayList<String>();
+		String current = url;
+		int level = 0;
+		while (current != null) {
+			Integer known = levels.get(current);
+			if (known != null) {
+				level = known;
+				break;
+			}
+			if (!referers.containsKey(current)) {
+				// linked from a page that isn't in the crawl, be safe and
+				// don't follow its links
+				level = maxLevel - 1;
+				break;
+			}
+			if (chain.contains(current)) {
+				level = maxLevel - 1;
+				break;
+			}
+			chain.add(current);
+			current = referers.get(current);
+		}
+
+		for (int i = chain.size() - 1; i >= 0; i--)
+			levels.put(chain.get(i), ++level);
+		return levels.get(url);
+	}
+
+	/**
+	 * Check if the frontier was made by a crawl with these settings.
+	 */
+	public boolean isCrawlOf(String theStartUrl, int theMaxLevel,
+			String theFollowPath, String theNotFollowPath) {
+		return startUrl.equals(theStartUrl) && maxLevel == theMaxLevel
+				&& followPath.equals(nullToEmpty(theFollowPath))
+				&& notFollowPath.equals(nullToEmpty(theNotFollowPath));
+	}
+
+	public String getStartUrl() {
+		return startUrl;
+	}
+
+	public int getMaxLevel() {
+		return maxLevel;
+	}
+
+	public String getFollowPath() {
+		return followPath;
+	}
+
+	public String getNotFollowPath() {
+		return notFollowPath;
+	}
+
+	public List<FrontierUrl> getUrls() {
+		return urls;
+	}
+
+	/**
+	 * Write the frontier. The file is written next to the old one and then
+	 * renamed, so a build reading it never sees half a file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if the file couldn't be written
+	 */
+	public void write(File file) throws IOException {
+
+		TreeMap<String, Integer> dictionary = new TreeMap<String, Integer>();
+		for (FrontierUrl url : urls) {
+			dictionary.put(url.getUrl(), null);
+			if (url.getReferer() != null)
+				dictionary.put(url.getReferer(), null);
+		}
+		int index = 0;
+		for (String url : dictionary.keySet())
+			dictionary.put(url, index++);
+
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(startUrl);
+			out.writeInt(maxLevel);
+			out.writeUTF(followPath);
+			out.writeUTF(notFollowPath);
+
+			DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+			DataOutputStream graph = new DataOutputStream(deflater);
+
+			StoreCodec.writeDictionary(dictionary.keySet(), graph);
+			StoreCodec.writeVarInt(urls.size(), graph);
+			for (FrontierUrl url : urls)
+				StoreCodec.writeVarInt(dictionary.get(url.getUrl()), graph);
+			// no referer is 0, so shift the others by one
+			for (FrontierUrl url : urls)
+				StoreCodec.writeVarInt(url.getReferer() == null ? 0
+						: dictionary.get(url.getReferer()) + 1, graph);
+			for (FrontierUrl url : urls)
+				StoreCodec.writeVarInt(url.getLevel(), graph);
+			for (FrontierUrl url : urls)
+				StoreCodec.writeVarInt(url.getTimesGone(), graph);
+
+			graph.flush();
+			deflater.finish();
+		} finally {
+			out.close();
+		}
+
+		if (!tmp.renameTo(file)) {
+			// some platforms can't rename over an existing file
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Couldn't rename " + tmp + " to "
+						+ file);
+		}
+	}
+
+	/**
+	 * Read a stored frontier.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the frontier
+	 * @throws IOException
+	 *             if the file is missing or isn't a frontier file
+	 */
+	public static UrlFrontier read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a JDBCMetrics frontier file: "
+						+ file);
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unknown version " + version
+						+ " of the frontier file: " + file);
+			String theStartUrl = in.readUTF();
+			int theMaxLevel = in.readInt();
+			String theFollowPath = in.readUTF();
+			String theNotFollowPath = in.readUTF();
+
+			DataInputStream graph = new DataInputStream(
+					new InflaterInputStream(in));
+			String[] dictionary = StoreCodec.readDictionary(graph);
+			int size = StoreCodec.readVarInt(graph);
+			int[] theUrls = StoreCodec.readColumn(size, graph);
+			int[] theReferers = StoreCodec.readColumn(size, graph);
+			int[] theLevels = StoreCodec.readColumn(size, graph);
+			int[] theTimesGone = StoreCodec.readColumn(size, graph);
+
+			List<FrontierUrl> frontierUrls = new ArrayList<FrontierUrl>(size);
+			for (int i = 0; i < size; i++) {
+				frontierUrls.add(new FrontierUrl(dictionary[theUrls[i]],
+						theReferers[i] == 0 ? null
+								: dictionary[theReferers[i] - 1], theLevels[i],
+						theTimesGone[i]));
+			}
+			return new UrlFrontier(theStartUrl, theMaxLevel, theFollowPath,
+					theNotFollowPath, frontierUrls);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static String emptyToNull(String value) {
+		return value == null || "".equals(value) ? null : value;
+	}
+}
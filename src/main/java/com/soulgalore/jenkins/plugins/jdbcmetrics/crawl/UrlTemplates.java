@@ -0,0 +1,228 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Group the urls by the type of page, like <em>/product/{id}</em>. The
+ * configured templates is tried first, one per line where a segment within
+ * braces matches any segment. Urls not matching any of them gets a template
+ * where the ids, uuids and slugs of the path is replaced, like
+ * <em>/blog/{slug}</em>, and the query keeps the names of the parameters,
+ * sorted.
+ */
+public final class UrlTemplates implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The templates of the urls when none is configured.
+	 */
+	public static final UrlTemplates DEFAULT = new UrlTemplates(
+			Collections.<String> emptyList());
+
+	private static final String ID = "{id}";
+	private static final String UUID = "{uuid}";
+	private static final String SLUG = "{slug}";
+	private static final String VALUE = "{}";
+	private static final String COMMENT = "#";
+
+	/**
+	 * A segment with this many words separated by - or _ is a slug, like
+	 * red-running-shoes, fewer is more likely a name like men-shoes.
+	 */
+	private static final int SLUG_WORDS = 3;
+
+	private final List<String> templates;
+	private final List<String[]> segments;
+
+	private UrlTemplates(List<String> theTemplates) {
+		templates = theTemplates;
+		segments = new ArrayList<String[]>(theTemplates.size());
+		for (String template : theTemplates)
+			segments.add(getSegments(template));
+	}
+
+	/**
+	 * Parse the templates, one per line. Empty lines and lines starting with #
+	 * is skipped.
+	 *
+	 * @param text
+	 *            the templates
+	 * @return the templates
+	 * @throws IllegalArgumentException
+	 *             if a template doesn't start with a slash
+	 */
+	public static UrlTemplates parse(String text) {
+		List<String> templates = new ArrayList<String>();
+		if (text != null) {
+			String[] lines = text.split("\r?\n");
+			for (int i = 0; i < lines.length; i++) {
+				String line = lines[i].trim();
+				if ("".equals(line) || line.startsWith(COMMENT))
+					continue;
+				if (!line.startsWith("/"))
+					throw new IllegalArgumentException("Line " + (i + 1)
+							+ " [" + line + "]: a template starts with /");
+				templates.add(line);
+			}
+		}
+		return new UrlTemplates(templates);
+	}
+
+	/**
+	 * Get the template of an url.
+	 *
+	 * @param url
+	 *            the full url
+	 * @return the template
+	 */
+	public String getTemplate(String url) {
+		String path = getPath(url);
+		int queryStart = path.indexOf('?');
+		String[] pathSegments = getSegments(queryStart == -1 ? path : path
+				.substring(0, queryStart));
+
+		for (int i = 0; i < segments.size(); i++) {
+			if (matches(segments.get(i), pathSegments))
+				return templates.get(i);
+		}
+
+		StringBuilder template = new StringBuilder(path.length());
+		for (String segment : pathSegments)
+			template.append('/').append(getPlaceholder(segment));
+		if (template.length() == 0)
+			template.append('/');
+		if (queryStart != -1)
+			appendParamNames(path.substring(queryStart + 1), template);
+		return template.toString();
+	}
+
+	private static boolean matches(String[] template, String[] path) {
+		if (template.length != path.length)
+			return false;
+		for (int i = 0; i < template.length; i++) {
+			if (!isWildcard(template[i]) && !template[i].equals(path[i]))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isWildcard(String segment) {
+		return segment.startsWith("{") && segment.endsWith("}");
+	}
+
+	/**
+	 * Get the placeholder of a segment, or the segment itself if it is the
+	 * same for all urls of the template.
+	 */
+	private static String getPlaceholder(String segment) {
+		if (isUuid(segment))
+			return UUID;
+		if (hasDigit(segment))
+			return ID;
+		if (isSlug(segment))
+			return SLUG;
+		return segment;
+	}
+
+	private static boolean isUuid(String segment) {
+		if (segment.length() != 36)
+			return false;
+		for (int i = 0; i < segment.length(); i++) {
+			char c = segment.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-')
+					return false;
+			} else if (Character.digit(c, 16) == -1)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isSlug(String segment) {
+		int words = 1;
+		for (int i = 1; i < segment.length() - 1; i++) {
+			char c = segment.charAt(i);
+			if ((c == '-' || c == '_') && segment.charAt(i - 1) != c)
+				words++;
+		}
+		return words >= SLUG_WORDS;
+	}
+
+	private static boolean hasDigit(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			if (Character.isDigit(segment.charAt(i)))
+				return true;
+		}
+		return false;
+	}
+
+	private static void appendParamNames(String query, StringBuilder template) {
+		List<String> names = new ArrayList<String>();
+		for (String param : query.split("&")) {
+			if ("".equals(param))
+				continue;
+			int equals = param.indexOf('=');
+			names.add(equals == -1 ? param : param.substring(0, equals));
+		}
+		if (names.isEmpty())
+			return;
+		Collections.sort(names);
+		template.append('?');
+		for (int i = 0; i < names.size(); i++) {
+			if (i > 0)
+				template.append('&');
+			template.append(names.get(i)).append('=').append(VALUE);
+		}
+	}
+
+	/**
+	 * Get the segments of a path, the empty segment before the first slash
+	 * not included.
+	 */
+	private static String[] getSegments(String path) {
+		String[] split = path.split("/", -1);
+		return split.length <= 1 ? new String[0] : Arrays.copyOfRange(split,
+				1, split.length);
+	}
+
+	/**
+	 * Get the path and query of an url, without the fragment.
+	 */
+	private static String getPath(String url) {
+		int scheme = url.indexOf("://");
+		int start = url.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+		int end = url.indexOf('#');
+		if (end == -1)
+			end = url.length();
+		int query = url.indexOf('?', scheme == -1 ? 0 : scheme + 3);
+		if (start == -1 || (query != -1 && query < start))
+			return query == -1 || query > end ? "/" : "/"
+					+ url.substring(query, end);
+		return start > end ? "/" : url.substring(start, end);
+	}
+}
@@ -0,0 +1,180 @@
+package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
+
+/**
+ * Limit the number of requests in flight and adapt the limit to how the
+ * server responds (additive increase, multiplicative decrease). The limit
+ * grows while the response time and the database time stays close to what
+ * they were with few requests, and shrinks as soon as they grow, so the
+ * server is never loaded so hard that the measured times get distorted.
+ */
+public class AdaptiveLimit {
+
+	/**
+	 * The weight of a new value in the short average, about the last ten
+	 * responses.
+	 */
+	private static final double SHORT_WEIGHT = 0.1;
+
+	/**
+	 * The weight of a new value in the baseline, about the last five hundred
+	 * responses that wasn't overloaded. It needs to move a lot slower than
+	 * the limit grows, else it follows a slowly growing overload.
+	 */
+	private static final double LONG_WEIGHT = 0.002;
+
+	/**
+	 * The number of responses fetched at the min limit before the limit
+	 * starts to grow, their average is the first baseline.
+	 */
+	private static final int WARMUP = 20;
+
+	private static final double DECREASE_FACTOR = 0.75;
+
+	/**
+	 * Times this close (ms) to the baseline is never seen as overload, small
+	 * times are too noisy to compare by ratio.
+	 */
+	private static final double SLACK = 5;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+
+	private final Signal responseTime = new Signal();
+	private final Signal dbTime = new Signal();
+
+	private double limit;
+	private int inFlight;
+	private boolean slowStart = true;
+	private long lastDecrease;
+	private int maxUsed;
+	private int responses;
+
+	/**
+	 * Create a limit, starting at the min limit.
+	 * 
+	 * @param theMinLimit
+	 *            the min number of requests in flight
+	 * @param theMaxLimit
+	 *            the max number of requests in flight
+	 * @param maxSlowdownPercent
+	 *            how many percent slower than the baseline the server may
+	 *            get before the limit is decreased
+	 */
+	public AdaptiveLimit(int theMinLimit, int theMaxLimit,
+			int maxSlowdownPercent) {
+		minLimit = Math.max(1, theMinLimit);
+		maxLimit = Math.max(minLimit, theMaxLimit);
+		tolerance = 1 + maxSlowdownPercent / 100D;
+		limit = minLimit;
+	}
+
+	/**
+	 * Wait until one more request can be sent.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= (int) limit)
+			wait();
+		inFlight++;
+		maxUsed = Math.max(maxUsed, inFlight);
+	}
+
+	/**
+	 * Tell that a request is done and how long it took.
+	 * 
+	 * @param theResponseTime
+	 *            the response time in ms
+	 * @param theDbTime
+	 *            the database time of the page in ms, negative if unknown
+	 */
+	public synchronized void release(long theResponseTime, int theDbTime) {
+		boolean wasLimited = inFlight >= (int) limit;
+		inFlight--;
+
+		responseTime.add(theResponseTime);
+		if (theDbTime >= 0)
+			dbTime.add(theDbTime);
+
+		if (++responses <= WARMUP) {
+			notifyAll();
+			return;
+		}
+
+		boolean overloaded = responseTime.isOver(tolerance)
+				|| dbTime.isOver(tolerance);
+
+		// the baseline doesn't learn from overload, it would follow it up,
+		// unless we are as low as we go and the server just is slower
+		if (!overloaded || limit <= minLimit) {
+			responseTime.learn(theResponseTime);
+			if (theDbTime >= 0)
+				dbTime.learn(theDbTime);
+		}
+
+		if (overloaded) {
+			// the responses already on their way was sent with the old limit,
+			// so only decrease once per response time. The slow start ends
+			// at the first decrease, before that there is no last decrease
+			// to compare with, nanoTime can be anything
+			long now = System.nanoTime();
+			if (slowStart
+					|| now - lastDecrease > responseTime.getShortAverage() * 1000000) {
+				limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+				lastDecrease = now;
+				slowStart = false;
+			}
+		} else if (wasLimited) {
+			// double per round trip until the first overload, then grow by
+			// one per round trip
+			limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+		}
+
+		notifyAll();
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @return the max number of requests that was in flight at the same time
+	 */
+	public synchronized int getMaxUsed() {
+		return maxUsed;
+	}
+
+	/**
+	 * A time compared with its own baseline. Until the warm up is done the
+	 * baseline is the plain average.
+	 */
+	private static final class Signal {
+		private double shortAverage;
+		private double baseline;
+		private int count;
+
+		void add(double value) {
+			if (count < WARMUP) {
+				count++;
+				baseline += (value - baseline) / count;
+				shortAverage = baseline;
+			} else
+				shortAverage += SHORT_WEIGHT * (value - shortAverage);
+		}
+
+		void learn(double value) {
+			baseline += LONG_WEIGHT * (value - baseline);
+		}
+
+		boolean isOver(double tolerance) {
+			return count >= WARMUP
+					&& shortAverage > baseline * tolerance + SLACK;
+		}
+
+		double getShortAverage() {
+			return shortAverage;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
+
+import java.util.Map;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.soulgalore.crawler.core.CrawlerConfiguration;
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.HTMLPageResponseFetcher;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.crawler.core.impl.HTTPClientResponseFetcher;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+
+/**
+ * Fetch the responses through an {@link AdaptiveLimit}, so both the crawl and
+ * the fetch of the pages only sends as many requests at the same time as the
+ * server handles without getting slower. The number of HTTP threads is the
+ * max.
+ */
+public class AdaptiveResponseFetcher implements HTMLPageResponseFetcher {
+
+	/**
+	 * The property turning on the adaptive mode, how many percent slower than
+	 * the baseline the server may get.
+	 */
+	public static final String MAX_SLOWDOWN_PROPERTY_NAME = "com.soulgalore.jenkins.plugins.jdbcmetrics.maxslowdown";
+
+	private final HTMLPageResponseFetcher fetcher;
+	private final AdaptiveLimit limit;
+
+	@Inject
+	public AdaptiveResponseFetcher(
+			HTTPClientResponseFetcher theFetcher,
+			@Named(CrawlerConfiguration.MAX_THREADS_PROPERTY_NAME) int nrOfThreads,
+			@Named(MAX_SLOWDOWN_PROPERTY_NAME) int maxSlowdownPercent) {
+		fetcher = theFetcher;
+		limit = new AdaptiveLimit(1, nrOfThreads, maxSlowdownPercent);
+	}
+
+	/**
+	 * Fetch the url when the limit allows it.
+	 * 
+	 * @return the response, or null if interrupted while waiting, since the
+	 *         page was never fetched and has no status
+	 */
+	public HTMLPageResponse get(PageURL url, boolean getPage,
+			Map<String, String> requestHeaders) {
+		try {
+			limit.acquire();
+		} catch (InterruptedException e) {
+			// the request is cancelled, don't send it, but keep the flag for
+			// the caller
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		long start = System.currentTimeMillis();
+		HTMLPageResponse response = null;
+		try {
+			response = fetcher.get(url, getPage, requestHeaders);
+			return response;
+		} finally {
+			limit.release(System.currentTimeMillis() - start,
+					response == null ? -1 : getDbTime(response));
+		}
+	}
+
+	/**
+	 * @return the max number of requests that was sent at the same time
+	 */
+	public int getMaxUsed() {
+		return limit.getMaxUsed();
+	}
+
+	public int getLimit() {
+		return limit.getLimit();
+	}
+
+	public void shutdown() {
+		fetcher.shutdown();
+	}
+
+	private static int getDbTime(HTMLPageResponse response) {
+		int readTime = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME));
+		int writeTime = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME));
+		if (readTime < 0 && writeTime < 0)
+			return -1;
+		return Math.max(0, readTime) + Math.max(0, writeTime);
+	}
+
+	private static int parse(String value) {
+		if (value == null)
+			return -1;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
+
+import java.util.Properties;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+/**
+ * Bind the crawler properties configured for one build, used to override the
+ * default properties instead of setting them as system properties that is
+ * shared by all builds in the JVM.
+ */
+public class BuildPropertiesModule extends AbstractModule {
+
+	private final Properties properties;
+
+	public BuildPropertiesModule(Properties theProperties) {
+		properties = theProperties;
+	}
+
+	@Override
+	protected void configure() {
+		Names.bindProperties(binder(), properties);
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tells the crawl and the fetch to stop, either when the deadline passes or
+ * when someone cancelled, like after too many failing pages.
+ */
+public class Cancellation {
+
+	/**
+	 * How often (ms) a wait checks if it was cancelled.
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	private final long deadline;
+	private volatile boolean cancelled;
+
+	/**
+	 * Create a cancellation.
+	 *
+	 * @param theDeadline
+	 *            the deadline as in System.currentTimeMillis(), or
+	 *            Long.MAX_VALUE for none
+	 */
+	public Cancellation(long theDeadline) {
+		deadline = theDeadline;
+	}
+
+	/**
+	 * Stop now, before the deadline.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true if {@link #cancel()} was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return true if cancelled or the deadline passed
+	 */
+	public boolean isStopped() {
+		return cancelled || System.currentTimeMillis() >= deadline;
+	}
+
+	/**
+	 * Wait until the future is done or it is time to stop.
+	 *
+	 * @param future
+	 *            the future to wait for
+	 * @return true if the future is done, false if it is time to stop
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean await(Future<?> future) throws InterruptedException {
+		while (!future.isDone()) {
+			if (isStopped())
+				return false;
+			try {
+				future.get(
+						Math.min(POLL_INTERVAL,
+								deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check again
+			} catch (ExecutionException e) {
+				// done, the caller gets the exception from the future
+				return true;
+			}
+		}
+		return true;
+	}
+}
@@ -1,34 +1,135 @@
 package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.soulgalore.crawler.core.CrawlerConfiguration;
 import com.soulgalore.crawler.core.HTMLPageResponse;
 import com.soulgalore.crawler.core.HTMLPageResponseFetcher;
 import com.soulgalore.crawler.core.PageURL;
 
+/**
+ * Fetch the urls concurrently, using the same number of threads as the HTTP
+ * client is configured with.
+ */
 public class DefaultFetcher implements Fetcher {
 
 	private final HTMLPageResponseFetcher responseFetcher;
-	
+	private final ExecutorService service;
+
 	@Inject
-	public DefaultFetcher(HTMLPageResponseFetcher theResponseFetcher) {
+	public DefaultFetcher(
+			HTMLPageResponseFetcher theResponseFetcher,
+			@Named(CrawlerConfiguration.MAX_THREADS_PROPERTY_NAME) int nrOfThreads) {
 		responseFetcher = theResponseFetcher;
+		service = Executors.newFixedThreadPool(nrOfThreads > 0 ? nrOfThreads
+				: 1);
 	}
-	
-	public Set<HTMLPageResponse> get(Set<PageURL> urls, Map<String,String> requestHeaders) {
-		
-		Set<HTMLPageResponse> responses = new HashSet<HTMLPageResponse>();
-		for (PageURL pageURL : urls) {
-			responses.add(responseFetcher.get(pageURL, true, requestHeaders));
+
+	public boolean get(Set<PageURL> urls,
+			final Map<String, String> requestHeaders, final int warmups,
+			final int samples, ResponseListener theListener,
+			Cancellation cancellation) {
+
+		final ClosableListener listener = new ClosableListener(theListener);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+				urls.size());
+		for (final PageURL pageURL : urls) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = 0; i < warmups; i++)
+						responseFetcher.get(pageURL, true, requestHeaders);
+					for (int i = 0; i < samples
+							&& !Thread.currentThread().isInterrupted(); i++) {
+						HTMLPageResponse response = responseFetcher.get(
+								pageURL, true, requestHeaders);
+						// a cancelled request has no real status, it would
+						// be reported as a failing page
+						if (response == null
+								|| Thread.currentThread().isInterrupted())
+							break;
+						listener.onResponse(response);
+					}
+					return null;
+				}
+			});
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+		for (Callable<Void> task : tasks)
+			futures.add(service.submit(task));
+
+		boolean complete = true;
+		try {
+			for (Future<Void> future : futures) {
+				if (!cancellation.await(future)) {
+					complete = false;
+					break;
+				}
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			complete = false;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// drop the responses of the requests already on their way before
+			// interrupting them, then skip the urls not fetched yet
+			listener.close();
+			for (Future<Void> future : futures)
+				future.cancel(true);
+		}
+		return complete;
+	}
+
+	/**
+	 * Hand over the responses until closed. Closing waits for the responses
+	 * being handed over, so the listener is never changed after we returned.
+	 */
+	private static final class ClosableListener implements ResponseListener {
+		private final ResponseListener listener;
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private boolean closed;
+
+		ClosableListener(ResponseListener theListener) {
+			listener = theListener;
+		}
+
+		public void onResponse(HTMLPageResponse response) {
+			lock.readLock().lock();
+			try {
+				if (!closed)
+					listener.onResponse(response);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		void close() {
+			lock.writeLock().lock();
+			try {
+				closed = true;
+			} finally {
+				lock.writeLock().unlock();
+			}
 		}
-		return responses;
 	}
 
 	public void shutdown() {
-		responseFetcher.shutdown();		
+		service.shutdown();
+		responseFetcher.shutdown();
 	}
-	
+
 }
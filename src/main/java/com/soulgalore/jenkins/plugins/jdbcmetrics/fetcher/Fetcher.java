@@ -3,12 +3,19 @@ package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
 import java.util.Map;
 import java.util.Set;
 
-import com.soulgalore.crawler.core.HTMLPageResponse;
 import com.soulgalore.crawler.core.PageURL;
 
 public interface Fetcher {
 
-	public Set<HTMLPageResponse> get(Set<PageURL> urls, Map<String,String> requestHeaders);
+	/**
+	 * Fetch every url first warmups times and then samples times, and hand
+	 * over the samples to the listener as soon as they arrive. The urls are
+	 * fetched concurrently, but the fetches of one url is done one after
+	 * another. Stop when cancelled or at the deadline: the urls not fetched
+	 * yet is skipped and responses arriving after that never reaches the
+	 * listener. Returns true if every url was fetched.
+	 */
+	public boolean get(Set<PageURL> urls, Map<String,String> requestHeaders, int warmups, int samples, ResponseListener listener, Cancellation cancellation);
 	
 	public void shutdown();
-}
\ No newline at end of file
+}
@@ -1,24 +1,59 @@
 package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
 
+import java.util.Properties;
+
 import org.apache.http.client.HttpClient;
 
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
 import com.soulgalore.crawler.core.HTMLPageResponseFetcher;
 
 import com.soulgalore.crawler.core.impl.HTTPClientResponseFetcher;
 import com.soulgalore.crawler.guice.AbstractPropertiesModule;
+import com.soulgalore.crawler.guice.CrawlModule;
 import com.soulgalore.crawler.guice.HttpClientProvider;
 
 public class FetcherModule extends AbstractPropertiesModule {
 
 	/**
-	 * Bind the classes.
+	 * Bind the classes. The HTTP client and the response fetcher are
+	 * singletons, so everything created by one injector share the same
+	 * connection pool.
 	 */
 	@Override
 	protected void configure() {
 		super.configure();
-		bind(HTMLPageResponseFetcher.class).to(HTTPClientResponseFetcher.class);
-		bind(HttpClient.class).toProvider(HttpClientProvider.class);
+		bind(HTMLPageResponseFetcher.class).to(HTTPClientResponseFetcher.class).in(Singleton.class);
+		bind(HttpClient.class).toProvider(HttpClientProvider.class).in(Singleton.class);
 		bind(Fetcher.class).to(DefaultFetcher.class);
 	}
 
+	/**
+	 * Get a module that can create both the crawler and the fetcher, sharing
+	 * one HTTP client. If the properties has the
+	 * {@link AdaptiveResponseFetcher#MAX_SLOWDOWN_PROPERTY_NAME}, the requests
+	 * of both goes through the same adaptive limit.
+	 * 
+	 * @param buildProperties
+	 *            crawler properties for this build, overriding the defaults
+	 * @return the module
+	 */
+	public static Module withCrawler(Properties buildProperties) {
+		Module module = Modules.override(
+				Modules.override(new CrawlModule()).with(new FetcherModule()))
+				.with(new BuildPropertiesModule(buildProperties));
+		if (buildProperties
+				.containsKey(AdaptiveResponseFetcher.MAX_SLOWDOWN_PROPERTY_NAME))
+			return Modules.override(module).with(new AbstractModule() {
+				@Override
+				protected void configure() {
+					bind(HTMLPageResponseFetcher.class).to(
+							AdaptiveResponseFetcher.class).in(Singleton.class);
+				}
+			});
+		return module;
+	}
+
 }
@@ -0,0 +1,12 @@
+package com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+
+/**
+ * Get each response as soon as it is fetched. The listener is called from the
+ * fetching threads, so it needs to be thread safe.
+ */
+public interface ResponseListener {
+
+	public void onResponse(HTMLPageResponse response);
+}
@@ -0,0 +1,98 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+/**
+ * The totals and 90 percentiles of one build, what the trend graphs show.
+ */
+public final class BuildSummary {
+
+	private final int pages;
+	private final double totalReads;
+	private final double totalWrites;
+	private final double totalReadTime;
+	private final double totalWriteTime;
+	private final double percentile90Reads;
+	private final double percentile90Writes;
+	private final double percentile90ReadTime;
+	private final double percentile90WriteTime;
+
+	public BuildSummary(int thePages, double theTotalReads,
+			double theTotalWrites, double theTotalReadTime,
+			double theTotalWriteTime, double thePercentile90Reads,
+			double thePercentile90Writes, double thePercentile90ReadTime,
+			double thePercentile90WriteTime) {
+		pages = thePages;
+		totalReads = theTotalReads;
+		totalWrites = theTotalWrites;
+		totalReadTime = theTotalReadTime;
+		totalWriteTime = theTotalWriteTime;
+		percentile90Reads = thePercentile90Reads;
+		percentile90Writes = thePercentile90Writes;
+		percentile90ReadTime = thePercentile90ReadTime;
+		percentile90WriteTime = thePercentile90WriteTime;
+	}
+
+	public static BuildSummary of(int pages, MetricsStatistics stats) {
+		return new BuildSummary(pages, stats.getReads().getSum(), stats
+				.getWrites().getSum(), stats.getReadTime().getSum(), stats
+				.getWriteTime().getSum(), stats.getReads().getPercentile90(),
+				stats.getWrites().getPercentile90(), stats.getReadTime()
+						.getPercentile90(), stats.getWriteTime()
+						.getPercentile90());
+	}
+
+	public int getPages() {
+		return pages;
+	}
+
+	public double getTotalReads() {
+		return totalReads;
+	}
+
+	public double getTotalWrites() {
+		return totalWrites;
+	}
+
+	public double getTotalReadTime() {
+		return totalReadTime;
+	}
+
+	public double getTotalWriteTime() {
+		return totalWriteTime;
+	}
+
+	public double getPercentile90Reads() {
+		return percentile90Reads;
+	}
+
+	public double getPercentile90Writes() {
+		return percentile90Writes;
+	}
+
+	public double getPercentile90ReadTime() {
+		return percentile90ReadTime;
+	}
+
+	public double getPercentile90WriteTime() {
+		return percentile90WriteTime;
+	}
+}
@@ -0,0 +1,46 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collect the metrics of all pages, used by the reports when everything is
+ * fetched.
+ */
+public class MetricsCollector implements MetricsSink {
+
+	private final List<PageMetrics> metrics = new ArrayList<PageMetrics>();
+
+	public synchronized void add(PageMetrics page) {
+		metrics.add(page);
+	}
+
+	/**
+	 * Get a copy of the collected metrics.
+	 * 
+	 * @return the metrics
+	 */
+	public synchronized List<PageMetrics> getMetrics() {
+		return new ArrayList<PageMetrics>(metrics);
+	}
+}
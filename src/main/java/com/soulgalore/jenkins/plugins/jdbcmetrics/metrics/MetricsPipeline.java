@@ -0,0 +1,47 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.ResponseListener;
+
+/**
+ * Turn each response into metrics as soon as it arrives and pass them on to
+ * the sinks, so the response can be dropped right away.
+ */
+public class MetricsPipeline implements ResponseListener {
+
+	private final List<MetricsSink> sinks;
+
+	public MetricsPipeline(MetricsSink... theSinks) {
+		sinks = Arrays.asList(theSinks);
+	}
+
+	public void onResponse(HTMLPageResponse response) {
+		PageMetrics page = PageMetrics.fromResponse(response);
+		for (MetricsSink sink : sinks) {
+			sink.add(page);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * The statistics for reads, writes, read time and write time of a set of
+ * pages, collected in one pass over the pages.
+ */
+public final class MetricsStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Statistic reads;
+	private final Statistic writes;
+	private final Statistic readTime;
+	private final Statistic writeTime;
+
+	MetricsStatistics(Statistic theReads, Statistic theWrites,
+			Statistic theReadTime, Statistic theWriteTime) {
+		reads = theReads;
+		writes = theWrites;
+		readTime = theReadTime;
+		writeTime = theWriteTime;
+	}
+
+	/**
+	 * Calculate the statistics, values that are missing for a page is not
+	 * included.
+	 * 
+	 * @param metrics
+	 *            the pages
+	 * @return the statistics
+	 */
+	public static MetricsStatistics of(Collection<PageMetrics> metrics) {
+		int size = metrics.size();
+		int[] readValues = new int[size];
+		int[] writeValues = new int[size];
+		int[] readTimeValues = new int[size];
+		int[] writeTimeValues = new int[size];
+		int nrOfReads = 0;
+		int nrOfWrites = 0;
+		int nrOfReadTimes = 0;
+		int nrOfWriteTimes = 0;
+
+		for (PageMetrics page : metrics) {
+			if (page.getReads() != PageMetrics.NOT_SET)
+				readValues[nrOfReads++] = page.getReads();
+			if (page.getWrites() != PageMetrics.NOT_SET)
+				writeValues[nrOfWrites++] = page.getWrites();
+			if (page.getReadTime() != PageMetrics.NOT_SET)
+				readTimeValues[nrOfReadTimes++] = page.getReadTime();
+			if (page.getWriteTime() != PageMetrics.NOT_SET)
+				writeTimeValues[nrOfWriteTimes++] = page.getWriteTime();
+		}
+
+		return new MetricsStatistics(Statistic.of(readValues, nrOfReads),
+				Statistic.of(writeValues, nrOfWrites), Statistic.of(
+						readTimeValues, nrOfReadTimes), Statistic.of(
+						writeTimeValues, nrOfWriteTimes));
+	}
+
+	public Statistic getReads() {
+		return reads;
+	}
+
+	public Statistic getWrites() {
+		return writes;
+	}
+
+	public Statistic getReadTime() {
+		return readTime;
+	}
+
+	public Statistic getWriteTime() {
+		return writeTime;
+	}
+}
@@ -0,0 +1,219 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Store the metrics of a build in a compact binary file in the build
+ * directory. The file starts with a {@link BuildSummary}, so the trend can be
+ * read without touching the pages. After that comes a deflated block with the
+ * urls as a sorted, front coded dictionary and then one column per value,
+ * with the pages pointing into the dictionary.
+ */
+public final class MetricsStore {
+
+	/**
+	 * The name of the file in the build directory.
+	 */
+	public static final String FILENAME = "jdbcmetrics.bin";
+
+	private static final int MAGIC = 0x4a44424d;
+	private static final int VERSION = 1;
+
+	private MetricsStore() {
+	}
+
+	/**
+	 * Write the metrics of a build. The file is written next to the old one
+	 * and then renamed, so the trend graph never reads half a file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @param metrics
+	 *            the metrics of all pages
+	 * @param stats
+	 *            the statistics of the pages
+	 * @throws IOException
+	 *             if the file couldn't be written
+	 */
+	public static void write(File file, Collection<PageMetrics> metrics,
+			MetricsStatistics stats) throws IOException {
+
+		BuildSummary summary = BuildSummary.of(metrics.size(), stats);
+
+		TreeMap<String, Integer> dictionary = new TreeMap<String, Integer>();
+		for (PageMetrics page : metrics)
+			dictionary.put(page.getUrl(), null);
+		int index = 0;
+		for (String url : dictionary.keySet())
+			dictionary.put(url, index++);
+
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeSummary(summary, out);
+
+			DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+			DataOutputStream pages = new DataOutputStream(deflater);
+
+			StoreCodec.writeDictionary(dictionary.keySet(), pages);
+
+			StoreCodec.writeVarInt(metrics.size(), pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(dictionary.get(page.getUrl()), pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(page.getResponseCode(), pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarLong(page.getFetchTime(), pages);
+			// NOT_SET is -1, so shift all values by one to keep them positive
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(page.getReads() + 1, pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(page.getWrites() + 1, pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(page.getReadTime() + 1, pages);
+			for (PageMetrics page : metrics)
+				StoreCodec.writeVarInt(page.getWriteTime() + 1, pages);
+
+			pages.flush();
+			deflater.finish();
+		} finally {
+			out.close();
+		}
+
+		if (!tmp.renameTo(file)) {
+			// some platforms can't rename over an existing file
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Couldn't rename " + tmp + " to "
+						+ file);
+		}
+	}
+
+	/**
+	 * Read only the summary of a build.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the summary
+	 * @throws IOException
+	 *             if the file is missing or isn't a metrics file
+	 */
+	public static BuildSummary readSummary(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			return readSummary(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the metrics of all pages in a build. The response headers of the
+	 * pages isn't stored.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the metrics
+	 * @throws IOException
+	 *             if the file is missing or isn't a metrics file
+	 */
+	public static List<PageMetrics> readPages(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			readSummary(in);
+			DataInputStream pages = new DataInputStream(
+					new InflaterInputStream(in));
+
+			String[] dictionary = StoreCodec.readDictionary(pages);
+
+			int size = StoreCodec.readVarInt(pages);
+			int[] urls = StoreCodec.readColumn(size, pages);
+			int[] responseCodes = StoreCodec.readColumn(size, pages);
+			long[] fetchTimes = new long[size];
+			for (int i = 0; i < size; i++)
+				fetchTimes[i] = StoreCodec.readVarLong(pages);
+			int[] reads = StoreCodec.readColumn(size, pages);
+			int[] writes = StoreCodec.readColumn(size, pages);
+			int[] readTimes = StoreCodec.readColumn(size, pages);
+			int[] writeTimes = StoreCodec.readColumn(size, pages);
+
+			List<PageMetrics> metrics = new ArrayList<PageMetrics>(size);
+			for (int i = 0; i < size; i++) {
+				metrics.add(new PageMetrics(dictionary[urls[i]],
+						responseCodes[i], fetchTimes[i], reads[i] - 1,
+						writes[i] - 1, readTimes[i] - 1, writeTimes[i] - 1,
+						null));
+			}
+			return metrics;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static DataInputStream open(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			in.close();
+			throw new IOException("Not a JDBCMetrics file: " + file);
+		}
+		return in;
+	}
+
+	private static void writeSummary(BuildSummary summary, DataOutputStream out)
+			throws IOException {
+		out.writeInt(summary.getPages());
+		out.writeDouble(summary.getTotalReads());
+		out.writeDouble(summary.getTotalWrites());
+		out.writeDouble(summary.getTotalReadTime());
+		out.writeDouble(summary.getTotalWriteTime());
+		out.writeDouble(summary.getPercentile90Reads());
+		out.writeDouble(summary.getPercentile90Writes());
+		out.writeDouble(summary.getPercentile90ReadTime());
+		out.writeDouble(summary.getPercentile90WriteTime());
+	}
+
+	private static BuildSummary readSummary(DataInputStream in)
+			throws IOException {
+		return new BuildSummary(in.readInt(), in.readDouble(),
+				in.readDouble(), in.readDouble(), in.readDouble(),
+				in.readDouble(), in.readDouble(), in.readDouble(),
+				in.readDouble());
+	}
+}
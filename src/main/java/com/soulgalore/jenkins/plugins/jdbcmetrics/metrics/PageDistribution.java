@@ -0,0 +1,103 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The distribution of reads, writes, read time and write time when a page is
+ * fetched more than once.
+ */
+public final class PageDistribution implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int samples;
+	private final Statistic reads;
+	private final Statistic writes;
+	private final Statistic readTime;
+	private final Statistic writeTime;
+
+	public PageDistribution(int theSamples, Statistic theReads,
+			Statistic theWrites, Statistic theReadTime, Statistic theWriteTime) {
+		samples = theSamples;
+		reads = theReads;
+		writes = theWrites;
+		readTime = theReadTime;
+		writeTime = theWriteTime;
+	}
+
+	/**
+	 * Calculate the distribution of the samples of one page.
+	 * 
+	 * @param samples
+	 *            the metrics of every time the page was fetched
+	 * @return the distribution
+	 */
+	public static PageDistribution of(List<PageMetrics> samples) {
+		int size = samples.size();
+		int[] readValues = new int[size];
+		int[] writeValues = new int[size];
+		int[] readTimeValues = new int[size];
+		int[] writeTimeValues = new int[size];
+		int nrOfReads = 0;
+		int nrOfWrites = 0;
+		int nrOfReadTimes = 0;
+		int nrOfWriteTimes = 0;
+
+		for (PageMetrics sample : samples) {
+			if (sample.getReads() != PageMetrics.NOT_SET)
+				readValues[nrOfReads++] = sample.getReads();
+			if (sample.getWrites() != PageMetrics.NOT_SET)
+				writeValues[nrOfWrites++] = sample.getWrites();
+			if (sample.getReadTime() != PageMetrics.NOT_SET)
+				readTimeValues[nrOfReadTimes++] = sample.getReadTime();
+			if (sample.getWriteTime() != PageMetrics.NOT_SET)
+				writeTimeValues[nrOfWriteTimes++] = sample.getWriteTime();
+		}
+
+		return new PageDistribution(size, Statistic.of(readValues, nrOfReads),
+				Statistic.of(writeValues, nrOfWrites), Statistic.of(
+						readTimeValues, nrOfReadTimes), Statistic.of(
+						writeTimeValues, nrOfWriteTimes));
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	public Statistic getReads() {
+		return reads;
+	}
+
+	public Statistic getWrites() {
+		return writes;
+	}
+
+	public Statistic getReadTime() {
+		return readTime;
+	}
+
+	public Statistic getWriteTime() {
+		return writeTime;
+	}
+}
@@ -0,0 +1,220 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+
+/**
+ * The JDBCMetrics values for one page, parsed once from the response headers.
+ * Values that wasn't sent by the server is {@link #NOT_SET}.
+ */
+public final class PageMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Marks a value that wasn't sent by the server.
+	 */
+	public static final int NOT_SET = -1;
+
+	private final String url;
+	private final int responseCode;
+	private final long fetchTime;
+	private final int reads;
+	private final int writes;
+	private final int readTime;
+	private final int writeTime;
+
+	/**
+	 * The response headers, only kept when the JDBCMetrics headers are
+	 * missing, so we can tell the user what the server actually sent.
+	 */
+	private final Map<String, String> responseHeaders;
+
+	/**
+	 * The distribution when the page was fetched more than once, else null.
+	 */
+	private final PageDistribution distribution;
+
+	public PageMetrics(String theUrl, int theResponseCode, long theFetchTime,
+			int theReads, int theWrites, int theReadTime, int theWriteTime,
+			Map<String, String> theResponseHeaders) {
+		this(theUrl, theResponseCode, theFetchTime, theReads, theWrites,
+				theReadTime, theWriteTime, theResponseHeaders, null);
+	}
+
+	public PageMetrics(String theUrl, int theResponseCode, long theFetchTime,
+			int theReads, int theWrites, int theReadTime, int theWriteTime,
+			Map<String, String> theResponseHeaders,
+			PageDistribution theDistribution) {
+		url = theUrl;
+		responseCode = theResponseCode;
+		fetchTime = theFetchTime;
+		reads = theReads;
+		writes = theWrites;
+		readTime = theReadTime;
+		writeTime = theWriteTime;
+		responseHeaders = theResponseHeaders;
+		distribution = theDistribution;
+	}
+
+	/**
+	 * Parse the JDBCMetrics headers of a response.
+	 *
+	 * @param response
+	 *            the response
+	 * @return the metrics of the page
+	 */
+	public static PageMetrics fromResponse(HTMLPageResponse response) {
+		int reads = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME));
+		int writes = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME));
+		int readTime = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME));
+		int writeTime = parse(response
+				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME));
+
+		return new PageMetrics(response.getPageUrl().getUrl(),
+				response.getResponseCode(), response.getFetchTime(), reads,
+				writes, readTime, writeTime,
+				reads == NOT_SET || writes == NOT_SET ? copy(response
+						.getResponseHeaders()) : null);
+	}
+
+	/**
+	 * Copy the headers, the metrics is sent between nodes and the map of the
+	 * crawler isn't guaranteed to be serializable.
+	 */
+	private static Map<String, String> copy(Map<String, String> headers) {
+		return headers == null ? null : new HashMap<String, String>(headers);
+	}
+
+	/**
+	 * Merge the samples of a page fetched more than once. The values of the
+	 * page is the median of the samples, so the limits are checked against a
+	 * less noisy value, and the full distribution is kept.
+	 * 
+	 * @param samples
+	 *            the metrics of each time the page was fetched, at least one
+	 * @return the metrics of the page
+	 */
+	public static PageMetrics fromSamples(List<PageMetrics> samples) {
+
+		PageDistribution distribution = PageDistribution.of(samples);
+
+		int[] fetchTimes = new int[samples.size()];
+		int responseCode = 0;
+		Map<String, String> responseHeaders = null;
+		for (int i = 0; i < fetchTimes.length; i++) {
+			PageMetrics sample = samples.get(i);
+			fetchTimes[i] = (int) sample.getFetchTime();
+			// keep the first failing response code, if any
+			if (responseCode == 0
+					|| (isOk(responseCode) && !isOk(sample.getResponseCode())))
+				responseCode = sample.getResponseCode();
+			if (responseHeaders == null)
+				responseHeaders = sample.getResponseHeaders();
+		}
+
+		int reads = median(distribution.getReads());
+		int writes = median(distribution.getWrites());
+
+		return new PageMetrics(samples.get(0).getUrl(), responseCode,
+				Math.round(Statistic.of(fetchTimes, fetchTimes.length)
+						.getMedian()), reads, writes,
+				median(distribution.getReadTime()),
+				median(distribution.getWriteTime()),
+				reads == NOT_SET || writes == NOT_SET ? responseHeaders : null,
+				distribution);
+	}
+
+	private static boolean isOk(int responseCode) {
+		return responseCode >= 200 && responseCode < 400;
+	}
+
+	private static int median(Statistic statistic) {
+		return statistic.getCount() == 0 ? NOT_SET : (int) Math
+				.round(statistic.getMedian());
+	}
+
+	private static int parse(String value) {
+		if (value == null)
+			return NOT_SET;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return NOT_SET;
+		}
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	public long getFetchTime() {
+		return fetchTime;
+	}
+
+	public int getReads() {
+		return reads;
+	}
+
+	public int getWrites() {
+		return writes;
+	}
+
+	public int getReadTime() {
+		return readTime;
+	}
+
+	public int getWriteTime() {
+		return writeTime;
+	}
+
+	public Map<String, String> getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	public PageDistribution getDistribution() {
+		return distribution;
+	}
+
+	/**
+	 * Check if the server didn't send the number of reads & writes.
+	 *
+	 * @return true if reads or writes is missing
+	 */
+	public boolean isMissingHeaders() {
+		return reads == NOT_SET || writes == NOT_SET;
+	}
+
+}
@@ -0,0 +1,95 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.ResponseListener;
+
+/**
+ * Collect the samples of pages fetched more than once, and pass on the merged
+ * metrics when all samples of a page has arrived. Only the parsed metrics of
+ * the samples are kept, never the responses.
+ */
+public class SamplingPipeline implements ResponseListener {
+
+	private final int samples;
+	private final List<MetricsSink> sinks;
+	private final ConcurrentMap<String, List<PageMetrics>> pending = new ConcurrentHashMap<String, List<PageMetrics>>();
+
+	public SamplingPipeline(int theSamples, MetricsSink... theSinks) {
+		samples = theSamples;
+		sinks = Arrays.asList(theSinks);
+	}
+
+	public void onResponse(HTMLPageResponse response) {
+		PageMetrics sample = PageMetrics.fromResponse(response);
+
+		List<PageMetrics> pageSamples = pending.get(sample.getUrl());
+		if (pageSamples == null) {
+			List<PageMetrics> created = new ArrayList<PageMetrics>(samples);
+			pageSamples = pending.putIfAbsent(sample.getUrl(), created);
+			if (pageSamples == null)
+				pageSamples = created;
+		}
+
+		PageMetrics page = null;
+		synchronized (pageSamples) {
+			pageSamples.add(sample);
+			if (pageSamples.size() == samples) {
+				pending.remove(sample.getUrl());
+				page = PageMetrics.fromSamples(pageSamples);
+			}
+		}
+
+		if (page != null)
+			emit(page);
+	}
+
+	/**
+	 * Pass on the pages that didn't get all their samples, because the fetch
+	 * was cancelled, timed out or got no response. They are merged from the
+	 * samples that arrived. Call it when the fetch has ended.
+	 */
+	public void flush() {
+		for (String url : pending.keySet()) {
+			List<PageMetrics> pageSamples = pending.remove(url);
+			if (pageSamples == null)
+				continue;
+			PageMetrics page;
+			synchronized (pageSamples) {
+				page = PageMetrics.fromSamples(pageSamples);
+			}
+			emit(page);
+		}
+	}
+
+	private void emit(PageMetrics page) {
+		for (MetricsSink sink : sinks) {
+			sink.add(page);
+		}
+	}
+}
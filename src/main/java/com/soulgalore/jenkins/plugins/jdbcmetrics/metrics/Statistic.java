@@ -0,0 +1,190 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.Serializable;
+
+/**
+ * Sum, mean, min, max, median and 90 percentile of a set of values. The
+ * percentiles are estimated the same way as commons-math
+ * <code>Percentile</code> does, but using selection instead of sorting the
+ * values.
+ */
+public final class Statistic implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int count;
+	private final double sum;
+	private final double mean;
+	private final double min;
+	private final double max;
+	private final double median;
+	private final double percentile90;
+
+	private Statistic(int theCount, double theSum, double theMean,
+			double theMin, double theMax, double theMedian,
+			double thePercentile90) {
+		count = theCount;
+		sum = theSum;
+		mean = theMean;
+		min = theMin;
+		max = theMax;
+		median = theMedian;
+		percentile90 = thePercentile90;
+	}
+
+	/**
+	 * Calculate the statistic for the first <code>count</code> values. The
+	 * values will be reordered.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param count
+	 *            the number of values to use
+	 * @return the statistic
+	 */
+	public static Statistic of(int[] values, int count) {
+
+		if (count == 0)
+			return new Statistic(0, 0, Double.NaN, Double.NaN, Double.NaN,
+					Double.NaN, Double.NaN);
+
+		long sum = 0;
+		int min = values[0];
+		int max = values[0];
+		for (int i = 0; i < count; i++) {
+			int value = values[i];
+			sum += value;
+			if (value < min)
+				min = value;
+			if (value > max)
+				max = value;
+		}
+
+		// the same correction of the mean as commons-math does
+		double mean = (double) sum / count;
+		double correction = 0;
+		for (int i = 0; i < count; i++)
+			correction += values[i] - mean;
+		mean += correction / count;
+
+		return new Statistic(count, sum, mean, min, max, percentile(values,
+				count, 50), percentile(values, count, 90));
+	}
+
+	private static double percentile(int[] values, int count, double p) {
+		if (count == 1)
+			return values[0];
+
+		double pos = p * (count + 1) / 100;
+		double fpos = Math.floor(pos);
+		int intPos = (int) fpos;
+		double dif = pos - fpos;
+
+		if (pos < 1)
+			return select(values, count, 0);
+		if (pos >= count)
+			return select(values, count, count - 1);
+
+		double lower = select(values, count, intPos - 1);
+		// after the selection everything to the right is at least as large
+		int upper = values[intPos];
+		for (int i = intPos + 1; i < count; i++) {
+			if (values[i] < upper)
+				upper = values[i];
+		}
+		return lower + dif * (upper - lower);
+	}
+
+	/**
+	 * Find the k:th smallest value, using quick select.
+	 */
+	private static int select(int[] values, int count, int k) {
+		int left = 0;
+		int right = count - 1;
+		while (right > left) {
+			int middle = (left + right) >>> 1;
+			int pivot = medianOf3(values[left], values[middle], values[right]);
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot)
+					i++;
+				while (values[j] > pivot)
+					j--;
+				if (i <= j) {
+					int tmp = values[i];
+					values[i] = values[j];
+					values[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return values[k];
+		}
+		return values[k];
+	}
+
+	private static int medianOf3(int a, int b, int c) {
+		if (a < b) {
+			if (b < c)
+				return b;
+			return a < c ? c : a;
+		}
+		if (a < c)
+			return a;
+		return b < c ? c : b;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public double getMedian() {
+		return median;
+	}
+
+	public double getPercentile90() {
+		return percentile90;
+	}
+}
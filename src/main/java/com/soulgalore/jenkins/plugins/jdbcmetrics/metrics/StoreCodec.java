@@ -0,0 +1,125 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * The encoding shared by the files the plugin stores: variable length
+ * numbers and sorted, front coded url dictionaries.
+ */
+public final class StoreCodec {
+
+	private StoreCodec() {
+	}
+
+	/**
+	 * Write sorted strings, each as the length of the prefix shared with the
+	 * previous string and the rest.
+	 * 
+	 * @param sorted
+	 *            the strings, sorted
+	 * @param out
+	 *            the stream
+	 * @throws IOException
+	 *             if the stream fails
+	 */
+	public static void writeDictionary(Collection<String> sorted,
+			DataOutputStream out) throws IOException {
+		writeVarInt(sorted.size(), out);
+		String previous = "";
+		for (String value : sorted) {
+			int shared = sharedPrefix(previous, value);
+			writeVarInt(shared, out);
+			byte[] suffix = value.substring(shared).getBytes("UTF-8");
+			writeVarInt(suffix.length, out);
+			out.write(suffix);
+			previous = value;
+		}
+	}
+
+	public static String[] readDictionary(DataInputStream in)
+			throws IOException {
+		String[] dictionary = new String[readVarInt(in)];
+		String previous = "";
+		for (int i = 0; i < dictionary.length; i++) {
+			int shared = readVarInt(in);
+			byte[] suffix = new byte[readVarInt(in)];
+			in.readFully(suffix);
+			dictionary[i] = previous.substring(0, shared)
+					+ new String(suffix, "UTF-8");
+			previous = dictionary[i];
+		}
+		return dictionary;
+	}
+
+	public static int[] readColumn(int size, DataInputStream in)
+			throws IOException {
+		int[] column = new int[size];
+		for (int i = 0; i < size; i++)
+			column[i] = readVarInt(in);
+		return column;
+	}
+
+	public static void writeVarInt(int value, DataOutputStream out)
+			throws IOException {
+		writeVarLong(value & 0xffffffffL, out);
+	}
+
+	public static void writeVarLong(long value, DataOutputStream out)
+			throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	public static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	public static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private static int sharedPrefix(String a, String b) {
+		int max = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < max && a.charAt(i) == b.charAt(i))
+			i++;
+		// never split a surrogate pair
+		if (i > 0 && Character.isHighSurrogate(a.charAt(i - 1)))
+			i--;
+		return i;
+	}
+}
@@ -0,0 +1,147 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.crawl.UrlTemplates;
+
+/**
+ * The statistics of the pages of one url template, like
+ * <em>/product/{id}</em>, to tell which kind of page that loads the
+ * database.
+ */
+public final class TemplateStatistics {
+
+	private static final Comparator<TemplateStatistics> MOST_READS_FIRST = new Comparator<TemplateStatistics>() {
+		public int compare(TemplateStatistics a, TemplateStatistics b) {
+			int reads = Double.compare(b.stats.getReads().getSum(), a.stats
+					.getReads().getSum());
+			return reads != 0 ? reads : a.template.compareTo(b.template);
+		}
+	};
+
+	private final String template;
+	private final int nrOfPages;
+	private final MetricsStatistics stats;
+
+	private TemplateStatistics(String theTemplate, int theNrOfPages,
+			MetricsStatistics theStats) {
+		template = theTemplate;
+		nrOfPages = theNrOfPages;
+		stats = theStats;
+	}
+
+	/**
+	 * Calculate the statistics of every template. The pages is grouped in one
+	 * pass, then the statistics of every template is calculated from its own
+	 * values, the same way as {@link MetricsStatistics}.
+	 * 
+	 * @param metrics
+	 *            the pages
+	 * @param templates
+	 *            groups the urls of the pages by template
+	 * @return the statistics, the template with the most reads first
+	 */
+	public static List<TemplateStatistics> of(Collection<PageMetrics> metrics,
+			UrlTemplates templates) {
+
+		Map<String, Values> byTemplate = new HashMap<String, Values>();
+		for (PageMetrics page : metrics) {
+			String template = templates.getTemplate(page.getUrl());
+			Values values = byTemplate.get(template);
+			if (values == null) {
+				values = new Values();
+				byTemplate.put(template, values);
+			}
+			values.add(page);
+		}
+
+		List<TemplateStatistics> result = new ArrayList<TemplateStatistics>(
+				byTemplate.size());
+		for (Map.Entry<String, Values> entry : byTemplate.entrySet())
+			result.add(new TemplateStatistics(entry.getKey(),
+					entry.getValue().nrOfPages, entry.getValue().toStatistics()));
+		Collections.sort(result, MOST_READS_FIRST);
+		return result;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public int getNrOfPages() {
+		return nrOfPages;
+	}
+
+	public MetricsStatistics getStats() {
+		return stats;
+	}
+
+	/**
+	 * The values of the pages of one template, missing values not included.
+	 */
+	private static final class Values {
+		private int nrOfPages;
+		private final IntValues reads = new IntValues();
+		private final IntValues writes = new IntValues();
+		private final IntValues readTime = new IntValues();
+		private final IntValues writeTime = new IntValues();
+
+		private void add(PageMetrics page) {
+			nrOfPages++;
+			reads.add(page.getReads());
+			writes.add(page.getWrites());
+			readTime.add(page.getReadTime());
+			writeTime.add(page.getWriteTime());
+		}
+
+		private MetricsStatistics toStatistics() {
+			return new MetricsStatistics(reads.toStatistic(),
+					writes.toStatistic(), readTime.toStatistic(),
+					writeTime.toStatistic());
+		}
+	}
+
+	private static final class IntValues {
+		private int[] values = new int[8];
+		private int count;
+
+		private void add(int value) {
+			if (value == PageMetrics.NOT_SET)
+				return;
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count++] = value;
+		}
+
+		private Statistic toStatistic() {
+			return Statistic.of(values, count);
+		}
+	}
+}
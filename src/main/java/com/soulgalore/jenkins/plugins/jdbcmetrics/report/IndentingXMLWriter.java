@@ -0,0 +1,123 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Stream XML to an output stream, indented the same way as the JDOM pretty
+ * format, so the elements never need to be kept in memory.
+ */
+class IndentingXMLWriter {
+
+	private static final String ENCODING = "UTF-8";
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final String INDENT = "  ";
+	private static final String CDATA_END = "]]>";
+
+	private final OutputStream out;
+	private final XMLStreamWriter writer;
+	private int depth;
+
+	IndentingXMLWriter(OutputStream theOut) throws XMLStreamException {
+		out = theOut;
+		writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out,
+				ENCODING);
+		writer.writeStartDocument(ENCODING, "1.0");
+		writer.writeCharacters(LINE_SEPARATOR);
+	}
+
+	void startElement(String name) throws XMLStreamException {
+		newLine();
+		writer.writeStartElement(name);
+		depth++;
+	}
+
+	void attribute(String name, String value) throws XMLStreamException {
+		writer.writeAttribute(name, value);
+	}
+
+	void endElement() throws XMLStreamException {
+		depth--;
+		writer.writeCharacters(LINE_SEPARATOR);
+		indent();
+		writer.writeEndElement();
+		if (depth == 0)
+			writer.writeCharacters(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Write an element without content, the attributes needs to be added
+	 * directly after.
+	 */
+	void emptyElement(String name) throws XMLStreamException {
+		newLine();
+		writer.writeEmptyElement(name);
+	}
+
+	void textElement(String name, String text) throws XMLStreamException {
+		newLine();
+		writer.writeStartElement(name);
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+	}
+
+	void cdataElement(String name, String text) throws XMLStreamException {
+		newLine();
+		writer.writeStartElement(name);
+		// a CDATA section can't hold its own end marker, split it in two
+		int start = 0;
+		int end;
+		while ((end = text.indexOf(CDATA_END, start)) != -1) {
+			writer.writeCData(text.substring(start, end + 2));
+			start = end + 2;
+		}
+		writer.writeCData(text.substring(start));
+		writer.writeEndElement();
+	}
+
+	/**
+	 * End the document and close the underlying stream.
+	 */
+	void close() throws XMLStreamException, IOException {
+		writer.writeEndDocument();
+		writer.close();
+		out.close();
+	}
+
+	private void newLine() throws XMLStreamException {
+		// the root element starts right after the declaration
+		if (depth == 0)
+			return;
+		writer.writeCharacters(LINE_SEPARATOR);
+		indent();
+	}
+
+	private void indent() throws XMLStreamException {
+		for (int i = 0; i < depth; i++)
+			writer.writeCharacters(INDENT);
+	}
+}
@@ -21,19 +21,26 @@
 package com.soulgalore.jenkins.plugins.jdbcmetrics.report;
 
 import hudson.FilePath;
-import hudson.model.AbstractBuild;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.util.Set;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
-import com.soulgalore.crawler.core.CrawlerResult;
-import com.soulgalore.crawler.core.HTMLPageResponse;
 import com.soulgalore.crawler.util.StatusCode;
-import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageDistribution;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.Statistic;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.TemplateStatistics;
 
 /**
- * Create a simple HTML version of the fetched JDBC Metrics.
+ * Create a simple HTML version of the fetched JDBC Metrics. The rows are
+ * written to the workspace file one by one.
  * 
  */
 public class JDBCMetricsHTMLReport {
@@ -51,122 +58,215 @@ public class JDBCMetricsHTMLReport {
 		logger = theLogger;
 	}
 
-	public void writeReport(Set<HTMLPageResponse> responses, FilePath workSpace,
-			AbstractBuild build) {
+	/**
+	 * Write the report, the time of the build is all the report needs from
+	 * it. The url templates is listed before the pages.
+	 */
+	public void writeReport(Collection<PageMetrics> metrics,
+			MetricsStatistics stats, List<TemplateStatistics> templateStats,
+			FilePath workSpace, Date buildTime) {
 
-		int nrOfPages = responses.size();
-		logger.println("Start writing html report " + FILENAME
-				+ " to workspace");
-		StringBuilder html = new StringBuilder();
-		html.append("<html><head>");
-		html.append(CSS);
-		html.append("</head><body><h1>JDBCMetrics</h1><p>Build time: ");
-		html.append(build.getTime());
-		html.append("</p>");
-		html.append("<p>");
-		html.append("Pages: ");
-		html.append(nrOfPages);
-		html.append(" Total reads: ");
-		html.append(getTotal(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME, responses));
-		html.append(" Total writes: ");
-		html.append(getTotal(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME, responses));
-		html.append("</p>");
-		html.append("<p>");
-		html.append("Reads per page: ");
-		html.append( (float) (getTotal(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME,
-				responses) / responses.size()));
-		html.append(" Writes per page: ");
-		html.append( (float) (getTotal(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME,
-				responses) / responses.size()));
-		html.append("</p>");
-		html.append("<table>");
-		html.append("<thead>");
-		html.append("<tr>");
-		html.append("<th>");
-		html.append("URL");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Reads");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Writes");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Read time (ms)");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Write time (ms)");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Time (ms)");
-		html.append("</th>");
-		html.append("<th>");
-		html.append("Response");
-		html.append("</th>");
-		html.append("</tr>");
-		html.append("</thead>");
-		html.append("<tbody>");
-		for (HTMLPageResponse resp : responses) {
-			html.append(getResponseHTML(resp));
+		int nrOfPages = metrics.size();
+		int totalReads = (int) stats.getReads().getSum();
+		int totalWrites = (int) stats.getWrites().getSum();
+		boolean sampled = false;
+		for (PageMetrics page : metrics) {
+			if (page.getDistribution() != null) {
+				sampled = true;
+				break;
+			}
 		}
 
-		html.append("</tbody>");
-		html.append("</table></body></html>");
+		logger.println("Start writing html report " + FILENAME
+				+ " to workspace");
 
+		Writer html = null;
 		try {
 			FilePath htmlFile = workSpace.child(FILENAME);
-			htmlFile.write(html.toString(), "UTF-8");
+			html = new BufferedWriter(new OutputStreamWriter(htmlFile.write(),
+					"UTF-8"));
+			html.write("<html><head>");
+			html.write(CSS);
+			html.write("</head><body><h1>JDBCMetrics</h1><p>Build time: ");
+			html.write("" + buildTime);
+			html.write("</p>");
+			html.write("<p>");
+			html.write("Pages: ");
+			html.write("" + nrOfPages);
+			html.write(" Total reads: ");
+			html.write("" + totalReads);
+			html.write(" Total writes: ");
+			html.write("" + totalWrites);
+			html.write("</p>");
+			html.write("<p>");
+			html.write("Reads per page: ");
+			html.write(""
+					+ (float) (nrOfPages == 0 ? 0 : totalReads / nrOfPages));
+			html.write(" Writes per page: ");
+			html.write(""
+					+ (float) (nrOfPages == 0 ? 0 : totalWrites / nrOfPages));
+			html.write("</p>");
+			writeTemplatesHTML(templateStats, html);
+			html.write("<h2>Pages</h2>");
+			html.write("<table>");
+			html.write("<thead>");
+			html.write("<tr>");
+			html.write("<th>URL</th>");
+			html.write("<th>Reads</th>");
+			html.write("<th>Writes</th>");
+			html.write("<th>Read time (ms)</th>");
+			html.write("<th>Write time (ms)</th>");
+			if (sampled) {
+				html.write("<th>Reads min/median/p90/max</th>");
+				html.write("<th>Writes min/median/p90/max</th>");
+				html.write("<th>Read time min/median/p90/max</th>");
+				html.write("<th>Write time min/median/p90/max</th>");
+			}
+			html.write("<th>Time (ms)</th>");
+			html.write("<th>Response</th>");
+			html.write("</tr>");
+			html.write("</thead>");
+			html.write("<tbody>");
+			for (PageMetrics page : metrics) {
+				writeResponseHTML(page, sampled, html);
+			}
+
+			html.write("</tbody>");
+			html.write("</table></body></html>");
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.println("Couldn't create HTML file " + FILENAME + " "
+					+ e.toString());
 		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.println("Couldn't create HTML file " + FILENAME + " "
+					+ e.toString());
+		} finally {
+			close(html);
 		}
 
 	}
 
-	private String getResponseHTML(HTMLPageResponse resp) {
-		StringBuilder html = new StringBuilder();
-		html.append("<tr>");
-		html.append("<td>");
-		html.append(resp.getPageUrl().getUrl());
-		html.append("</td>");
-		html.append("<td>");
-		html.append(resp
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME));
-		html.append("</td>");
-		html.append("<td>");
-		html.append(resp
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME));
-		html.append("</td>");
-		html.append("<td>");
-		html.append(resp
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME));
-		html.append("</td>");
-		html.append("<td>");
-		html.append(resp
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME));
-		html.append("</td>");
-		
-		html.append("<td>");
-		html.append(resp.getFetchTime());
-		html.append("</td>");
-		html.append("<td>");
-		html.append(StatusCode.toFriendlyName(resp.getResponseCode()));
-		html.append("</td>");
-		html.append("</tr>");
-		return html.toString();
+	private void writeTemplatesHTML(List<TemplateStatistics> templateStats,
+			Writer html) throws IOException {
+		html.write("<h2>Templates</h2>");
+		html.write("<table>");
+		html.write("<thead>");
+		html.write("<tr>");
+		html.write("<th>Template</th>");
+		html.write("<th>Pages</th>");
+		html.write("<th>Reads sum/median/p90/max</th>");
+		html.write("<th>Writes sum/median/p90/max</th>");
+		html.write("<th>Read time sum/median/p90/max</th>");
+		html.write("<th>Write time sum/median/p90/max</th>");
+		html.write("</tr>");
+		html.write("</thead>");
+		html.write("<tbody>");
+		for (TemplateStatistics template : templateStats) {
+			MetricsStatistics stats = template.getStats();
+			html.write("<tr>");
+			html.write("<td>");
+			html.write(template.getTemplate());
+			html.write("</td>");
+			html.write("<td>");
+			html.write(Integer.toString(template.getNrOfPages()));
+			html.write("</td>");
+			writeTemplateCell(stats.getReads(), html);
+			writeTemplateCell(stats.getWrites(), html);
+			writeTemplateCell(stats.getReadTime(), html);
+			writeTemplateCell(stats.getWriteTime(), html);
+			html.write("</tr>");
+		}
+		html.write("</tbody>");
+		html.write("</table>");
 	}
-	
-	private int getTotal(String headerName,Set<HTMLPageResponse> result) {
-		int total = 0;
-		for (HTMLPageResponse resp : result) {
-			String value = resp.getHeaderValue(headerName);
-			if (value != null) {
-				total += Integer.parseInt(value);
-			}
+
+	private void writeTemplateCell(Statistic statistic, Writer html)
+			throws IOException {
+		html.write("<td>");
+		if (statistic.getCount() > 0) {
+			html.write(format(statistic.getSum()));
+			html.write(" / ");
+			html.write(format(statistic.getMedian()));
+			html.write(" / ");
+			html.write(format(statistic.getPercentile90()));
+			html.write(" / ");
+			html.write(format(statistic.getMax()));
+		}
+		html.write("</td>");
+	}
+
+	private void writeResponseHTML(PageMetrics page, boolean sampled,
+			Writer html) throws IOException {
+		html.write("<tr>");
+		html.write("<td>");
+		html.write(page.getUrl());
+		html.write("</td>");
+		html.write("<td>");
+		writeCell(page.getReads(), html);
+		html.write("</td>");
+		html.write("<td>");
+		writeCell(page.getWrites(), html);
+		html.write("</td>");
+		html.write("<td>");
+		writeCell(page.getReadTime(), html);
+		html.write("</td>");
+		html.write("<td>");
+		writeCell(page.getWriteTime(), html);
+		html.write("</td>");
+		if (sampled) {
+			PageDistribution distribution = page.getDistribution();
+			writeDistributionCell(
+					distribution == null ? null : distribution.getReads(), html);
+			writeDistributionCell(
+					distribution == null ? null : distribution.getWrites(),
+					html);
+			writeDistributionCell(distribution == null ? null : distribution
+					.getReadTime(), html);
+			writeDistributionCell(distribution == null ? null : distribution
+					.getWriteTime(), html);
+		}
+		html.write("<td>");
+		html.write(Long.toString(page.getFetchTime()));
+		html.write("</td>");
+		html.write("<td>");
+		html.write(StatusCode.toFriendlyName(page.getResponseCode()));
+		html.write("</td>");
+		html.write("</tr>");
+	}
+
+	private void writeCell(int value, Writer html) throws IOException {
+		if (value != PageMetrics.NOT_SET)
+			html.write(Integer.toString(value));
+	}
+
+	private void writeDistributionCell(Statistic statistic, Writer html)
+			throws IOException {
+		html.write("<td>");
+		if (statistic != null && statistic.getCount() > 0) {
+			html.write(format(statistic.getMin()));
+			html.write(" / ");
+			html.write(format(statistic.getMedian()));
+			html.write(" / ");
+			html.write(format(statistic.getPercentile90()));
+			html.write(" / ");
+			html.write(format(statistic.getMax()));
+		}
+		html.write("</td>");
+	}
+
+	private String format(double value) {
+		if (value == Math.rint(value))
+			return Long.toString((long) value);
+		return Double.toString(Math.round(value * 10) / 10.0D);
+	}
+
+	private void close(Writer html) {
+		if (html == null)
+			return;
+		try {
+			html.close();
+		} catch (IOException e) {
+			logger.println("Couldn't close HTML file " + FILENAME + " "
+					+ e.toString());
 		}
-		return total;
 	}
 }
@@ -22,60 +22,129 @@ package com.soulgalore.jenkins.plugins.jdbcmetrics.report;
 
 import hudson.FilePath;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
+import javax.xml.stream.XMLStreamException;
 
-import com.soulgalore.crawler.core.CrawlerResult;
-import com.soulgalore.crawler.core.HTMLPageResponse;
-import com.soulgalore.crawler.util.StatusCode;
-import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.LimitsCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.PageCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.SuiteCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
 
 /**
- * Generate a JUnit XML report.
+ * Generate a JUnit XML report. The report is streamed to the workspace and
+ * only the worst failures are logged to the console.
  *
  */
 public class JDBCMetricsJUnitXMLReport {
 
 	public static final String FILENAME = "jdbcmetrics-junit.xml";
-	private final int maxReads;
-	private final int maxWrites;
+
+	/**
+	 * The default max number of failing pages that is logged to the console.
+	 */
+	public static final int DEFAULT_MAX_LOGGED_FAILURES = 20;
+
+	private final List<PageCheck> checks;
+	private final List<SuiteCheck> suiteChecks;
 	private final String headerName;
 	private final PrintStream logger;
+	private final int maxLoggedFailures;
 
 	public JDBCMetricsJUnitXMLReport(int theMaxReads, int theMaxWrites,
 			String theHeaderName, PrintStream theLogger) {
-		maxReads = theMaxReads;
-		maxWrites = theMaxWrites;
+		this(Collections.<PageCheck> singletonList(new LimitsCheck(
+				theMaxReads, theMaxWrites)), Collections
+				.<SuiteCheck> emptyList(), theHeaderName, theLogger,
+				DEFAULT_MAX_LOGGED_FAILURES);
+	}
+
+	/**
+	 * Create a report that verifies every page with the checks and all pages
+	 * together with the suite checks.
+	 */
+	public JDBCMetricsJUnitXMLReport(List<PageCheck> theChecks,
+			List<SuiteCheck> theSuiteChecks, String theHeaderName,
+			PrintStream theLogger, int theMaxLoggedFailures) {
+		checks = theChecks;
+		suiteChecks = theSuiteChecks;
 		headerName = theHeaderName;
 		logger = theLogger;
+		maxLoggedFailures = theMaxLoggedFailures;
 	}
 
-	public boolean verifyAndWriteReport(Set<HTMLPageResponse> responses,
+	public boolean verifyAndWriteReport(Collection<PageMetrics> metrics,
 			FilePath workSpace) {
+		return verifyAndWriteReport(metrics, MetricsStatistics.of(metrics),
+				workSpace);
+	}
 
-		boolean isSuccess = true;
+	public boolean verifyAndWriteReport(Collection<PageMetrics> metrics,
+			MetricsStatistics stats, FilePath workSpace) {
 
-		Element root = new Element("testsuites");
-		root.setAttribute("name", "the jdbcmetrics suites");
-		root.addContent(getTestSuite(responses));
+		// keep the worst failures in a heap with the least bad on top
+		PriorityQueue<Failure> worst = new PriorityQueue<Failure>(Math.max(1,
+				maxLoggedFailures));
+		// the checks only run once per page, the message of every failing
+		// page is kept for the report
+		String[] messages = new String[metrics.size()];
+		int failures = 0;
+		long testSuiteTime = 0;
+		int index = 0;
+		for (PageMetrics page : metrics) {
+			testSuiteTime += page.getFetchTime();
+			Failure failure = check(page);
+			if (failure != null) {
+				messages[index] = failure.message;
+				failures++;
+				if (worst.size() < maxLoggedFailures)
+					worst.add(failure);
+				else if (maxLoggedFailures > 0
+						&& failure.compareTo(worst.peek()) > 0) {
+					worst.poll();
+					worst.add(failure);
+				}
+			}
+			index++;
+		}
 
-		if (getNumberOfFailures(responses) > 0)
-			isSuccess = false;
+		if (failures > 0)
+			logFailures(worst, failures, metrics.size());
 
-		Document doc = new Document(root);
-		XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+		String[] suiteFailures = new String[suiteChecks.size()];
+		int nrOfSuiteFailures = 0;
+		for (int i = 0; i < suiteFailures.length; i++) {
+			suiteFailures[i] = suiteChecks.get(i).check(stats);
+			if (suiteFailures[i] != null) {
+				logger.println(suiteFailures[i]);
+				nrOfSuiteFailures++;
+			}
+		}
 
-		if (!isSuccess)
-			logger.println(outputter.outputString(doc));
+		boolean isSuccess = failures == 0 && nrOfSuiteFailures == 0;
 
+		OutputStream out = null;
 		try {
 			FilePath junitXML = workSpace.child(FILENAME);
-			outputter.output(doc, junitXML.write());
+			out = new BufferedOutputStream(junitXML.write());
+			IndentingXMLWriter xml = new IndentingXMLWriter(out);
+			xml.startElement("testsuites");
+			xml.attribute("name", "the jdbcmetrics suites");
+			writeTestSuite(metrics, messages, failures, testSuiteTime, xml);
+			if (!suiteChecks.isEmpty())
+				writeSuiteChecks(stats, suiteFailures, nrOfSuiteFailures, xml);
+			xml.endElement();
+			xml.close();
 			logger.println("Wrote " + FILENAME + " to workspace dir");
 			return isSuccess;
 
@@ -83,132 +152,189 @@ public class JDBCMetricsJUnitXMLReport {
 			logger.println("Couldn't create JunitXML file " + FILENAME + " "
 					+ e.toString());
 			return false;
+		} finally {
+			close(out);
 		}
 
 	}
 
-	private Element getTestSuite(Set<HTMLPageResponse> responses) {
-
-		Element testSuite = new Element("testsuite");
-		testSuite.setAttribute("name", "Tested pages");
-
-		testSuite.setAttribute("tests", ""
-				+ (responses.size()));
-		testSuite.setAttribute("failures", ""
-				+ (getNumberOfFailures(responses)));
+	private void writeTestSuite(Collection<PageMetrics> metrics,
+			String[] messages, int failures, long testSuiteTime,
+			IndentingXMLWriter xml) throws XMLStreamException {
+
+		xml.startElement("testsuite");
+		xml.attribute("name", "Tested pages");
+		xml.attribute("tests", "" + (metrics.size()));
+		xml.attribute("failures", "" + failures);
+		xml.attribute("time", "" + (testSuiteTime / 1000.0D));
+
+		int index = 0;
+		for (PageMetrics page : metrics) {
+
+			boolean isMissingHeaders = page.isMissingHeaders();
+			String message = messages[index++];
+			boolean isFailure = message != null;
+
+			if (isFailure)
+				xml.startElement("testcase");
+			else
+				xml.emptyElement("testcase");
+			xml.attribute("name", junitFriendlyUrlName(page.getUrl()));
+			xml.attribute("status", isMissingHeaders ? "" : getStatus(page));
+			xml.attribute("time", "" + (page.getFetchTime() / 1000.0D));
+			if (isFailure) {
+				xml.emptyElement("failure");
+				xml.attribute("message", message);
+				xml.endElement();
+			}
+		}
 
-		long testSuiteTime = 0;
-		for (HTMLPageResponse resp : responses)
-			testSuiteTime += resp.getFetchTime();
-		testSuite.setAttribute("time", "" + (testSuiteTime / 1000.0D));
-
-		for (HTMLPageResponse resp : responses) {
-
-			Element testCase = new Element("testcase");
-			testCase.setAttribute("name", junitFriendlyUrlName(resp
-					.getPageUrl().getUrl()));
-			testCase.setAttribute("status", isMissingHeaders(resp) ? ""
-					: getStatus(resp));
-			testCase.setAttribute("time", "" + (resp.getFetchTime() / 1000.0D));
-			if (isMissingHeaders(resp) || isFailure(resp)) {
-				Element failure = new Element("failure");
-				if (isMissingHeaders(resp))
-					failure.setAttribute("message", missingHeadersMessage(resp));
+		xml.endElement();
 
-				else
-					failure.setAttribute("message", "The url "
-							+ resp.getPageUrl().getUrl()
-							+ " made too many database requests "
-							+ getStatus(resp));
-
-				testCase.addContent(failure);
+	}
 
+	private void writeSuiteChecks(MetricsStatistics stats,
+			String[] suiteFailures, int failures, IndentingXMLWriter xml)
+			throws XMLStreamException {
+
+		xml.startElement("testsuite");
+		xml.attribute("name", "All pages");
+		xml.attribute("tests", "" + suiteChecks.size());
+		xml.attribute("failures", "" + failures);
+		xml.attribute("time", "0.0");
+
+		for (int i = 0; i < suiteFailures.length; i++) {
+			SuiteCheck check = suiteChecks.get(i);
+			if (suiteFailures[i] != null)
+				xml.startElement("testcase");
+			else
+				xml.emptyElement("testcase");
+			xml.attribute("name", check.getName());
+			xml.attribute("status", check.getStatus(stats));
+			xml.attribute("time", "0.0");
+			if (suiteFailures[i] != null) {
+				xml.emptyElement("failure");
+				xml.attribute("message", suiteFailures[i]);
+				xml.endElement();
 			}
-			testSuite.addContent(testCase);
-		}
-/*
-		for (HTMLPageResponse resp : result.getNonWorkingUrls()) {
-			Element testCase = new Element("testcase");
-			testCase.setAttribute("name", junitFriendlyUrlName(resp
-					.getPageUrl().getUrl()));
-			testCase.setAttribute("status",
-					StatusCode.toFriendlyName(resp.getResponseCode()));
-			testCase.setAttribute("time", "" + (resp.getFetchTime() / 1000.0D));
-			Element failure = new Element("failure");
-			failure.setAttribute("message",
-					"The url " + resp.getPageUrl().getUrl() + " got "
-							+ StatusCode.toFriendlyName(resp.getResponseCode())
-							+ " and is linked from "
-							+ resp.getPageUrl().getReferer());
-			testCase.addContent(failure);
-			testSuite.addContent(testCase);
 		}
-*/
-		return testSuite;
 
+		xml.endElement();
 	}
 
-	private int getNumberOfFailures(Set<HTMLPageResponse> responses) {
-		int failures = 0;
-		for (HTMLPageResponse resp : responses) {
-			if (isMissingHeaders(resp) || isFailure(resp))
-				failures++;
+	private void logFailures(Collection<Failure> worst, int failures,
+			int pages) {
+		List<Failure> sorted = new ArrayList<Failure>(worst);
+		Collections.sort(sorted, Collections.reverseOrder());
+
+		logger.println(failures + " of " + pages
+				+ " pages failed the JDBCMetrics checks"
+				+ (failures > sorted.size() ? ", the " + sorted.size()
+						+ " worst are:" : ":"));
+		for (Failure failure : sorted) {
+			logger.println(failure.message);
+			if (failure.page.isMissingHeaders())
+				logHeaders(failure.page);
 		}
-	
-		return failures;
+		if (failures > sorted.size())
+			logger.println("See " + FILENAME + " for all failing pages");
 	}
 
-	private boolean isMissingHeaders(HTMLPageResponse response) {
-		if (response.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME) == null
-				|| response
-						.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME) == null) {
-			return true;
+	/**
+	 * Run the checks of a page and rate how bad the failure is. Missing
+	 * headers is worst, since that means no page got measured, then by the
+	 * number of failing checks and requests above the limits of the page, so
+	 * a page failing only on time or regression still ranks above none.
+	 * 
+	 * @return the failure, or null if the page is ok
+	 */
+	private Failure check(PageMetrics page) {
+		if (page.isMissingHeaders())
+			return new Failure(page, missingHeadersMessage(),
+					Integer.MAX_VALUE);
+
+		StringBuilder message = null;
+		long severity = 0;
+		for (PageCheck check : checks) {
+			String failure = check.check(page);
+			if (failure != null) {
+				severity++;
+				if (check instanceof LimitsCheck)
+					severity += ((LimitsCheck) check).getExcess(page);
+				if (message == null)
+					message = new StringBuilder(failure);
+				else
+					message.append(". ").append(failure);
+			}
 		}
-		return false;
+		if (message == null)
+			return null;
+		// below the missing headers
+		return new Failure(page, message.toString(), (int) Math.min(severity,
+				Integer.MAX_VALUE - 1));
 	}
 
-	private boolean isFailure(HTMLPageResponse response) {
-
-		int reads = Integer.parseInt(response
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME));
-		int writes = Integer.parseInt(response
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME));
-
-		if (reads > maxReads || writes > maxWrites)
-			return true;
-		return false;
-
+	private String getStatus(PageMetrics page) {
+		return "reads:" + page.getReads() + " writes:" + page.getWrites();
 	}
 
-	private String getStatus(HTMLPageResponse response) {
-
-		int reads = Integer.parseInt(response
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME));
-		int writes = Integer.parseInt(response
-				.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME));
-
-		return "reads:" + reads + " writes:" + writes;
-	}
-
-	private String missingHeadersMessage(HTMLPageResponse response) {
+	private String missingHeadersMessage() {
 		StringBuilder builder = new StringBuilder(
 				"Missing JDBCMetrics information from the server. The server should listen on request header [");
 		builder.append(headerName);
 		builder.append("]. Check the console for more info. More information about JDBCMetrics here: https://github.com/soulgalore/jdbcmetrics");
+		return builder.toString();
+	}
 
+	private void logHeaders(PageMetrics page) {
 		logger.println("Missing JDBCMetrics info from the server. Got the following headers (for page "
-				+ response.getPageUrl().getUri() + " ):");
+				+ page.getUrl() + " ):");
 
 		logger.println("-------------");
-		for (String key : response.getResponseHeaders().keySet()) {
-			logger.println(key + " : " + response.getHeaderValue(key));
+		if (page.getResponseHeaders() != null) {
+			for (Map.Entry<String, String> header : page.getResponseHeaders()
+					.entrySet()) {
+				logger.println(header.getKey() + " : " + header.getValue());
+			}
 		}
 		logger.println("-------------");
-		return builder.toString();
 	}
 
 	private static String junitFriendlyUrlName(String url) {
 		return url.replace("&", "_");
 	}
 
+	/**
+	 * A failing page, ordered by how bad the failure is.
+	 */
+	private static final class Failure implements Comparable<Failure> {
+		private final PageMetrics page;
+		private final String message;
+		private final int severity;
+
+		private Failure(PageMetrics thePage, String theMessage, int theSeverity) {
+			page = thePage;
+			message = theMessage;
+			severity = theSeverity;
+		}
+
+		public int compareTo(Failure other) {
+			return severity < other.severity ? -1
+					: (severity == other.severity ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Close the file if the report failed half way, closing it twice is ok.
+	 */
+	private void close(OutputStream out) {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} catch (IOException e) {
+			logger.println("Couldn't close JunitXML file " + FILENAME + " "
+					+ e.toString());
+		}
+	}
 }
@@ -22,22 +22,24 @@ package com.soulgalore.jenkins.plugins.jdbcmetrics.report;
 
 import hudson.FilePath;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.Arrays;
-import java.util.Set;
+import java.util.Collection;
+import java.util.List;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.jdom2.CDATA;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
+import javax.xml.stream.XMLStreamException;
 
-import com.soulgalore.crawler.core.HTMLPageResponse;
-import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsStatistics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageDistribution;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.Statistic;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.TemplateStatistics;
 
 /**
- * Generate a generic XML report.
+ * Generate a generic XML report. The report is streamed to the workspace, one
+ * page at a time.
  * 
  */
 public class JDBCMetricsXMLReport {
@@ -54,176 +56,172 @@ public class JDBCMetricsXMLReport {
 		logger = theLogger;
 	}
 
-	public void writeReport(Set<HTMLPageResponse> responses, FilePath workSpace) {
+	/**
+	 * Write the report, an incomplete one is marked with
+	 * <em>incomplete="true"</em> on the root element. The statistics of every
+	 * url template is written after the pages.
+	 */
+	public void writeReport(Collection<PageMetrics> metrics,
+			MetricsStatistics stats, List<TemplateStatistics> templateStats,
+			FilePath workSpace, boolean complete) {
 
-		Element root = new Element("jdbcmetrics");
-		root.setAttribute("maxReads", "" + maxReads);
-		root.setAttribute("maxWrites", "" + maxWrites);
-		root.addContent(getResult(responses));
-		Document doc = new Document(root);
-		XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+		OutputStream out = null;
 		try {
-			FilePath junitXML = workSpace.child(FILENAME);
-			outputter.output(doc, junitXML.write());
+			FilePath xmlFile = workSpace.child(FILENAME);
+			out = new BufferedOutputStream(xmlFile.write());
+			IndentingXMLWriter xml = new IndentingXMLWriter(out);
+			xml.startElement("jdbcmetrics");
+			xml.attribute("maxReads", "" + maxReads);
+			xml.attribute("maxWrites", "" + maxWrites);
+			if (!complete)
+				xml.attribute("incomplete", "true");
+			writeResult(metrics, stats, xml);
+			writeTemplates(templateStats, xml);
+			xml.endElement();
+			xml.close();
 			logger.println("Wrote " + FILENAME + " to workspace dir");
 
 		} catch (Exception e) {
 			logger.println("Couldn't create XML file " + FILENAME + " "
 					+ e.toString());
+		} finally {
+			close(out);
 		}
 
 	}
 
-	private DescriptiveStatistics getStats(String headerName,
-			Set<HTMLPageResponse> responses) {
+	private void writeResult(Collection<PageMetrics> metrics,
+			MetricsStatistics stats, IndentingXMLWriter xml)
+			throws XMLStreamException {
+
+		Statistic readStats = stats.getReads();
+		Statistic writeStats = stats.getWrites();
+		Statistic readTimeStats = stats.getReadTime();
+		Statistic writeTimeStats = stats.getWriteTime();
+
+		xml.startElement("pages");
+
+		xml.textElement("totalReads", "" + readStats.getSum());
+		xml.textElement("totalWrites", "" + writeStats.getSum());
+
+		xml.textElement("meanReadsPerPage", "" + readStats.getMean());
+		xml.textElement("meanWritesPerPage", "" + writeStats.getMean());
+		xml.textElement("meanWriteTimePerPage", "" + writeTimeStats.getMean());
+		xml.textElement("meanReadTimePerPage", "" + readTimeStats.getMean());
+
+		xml.textElement("medianReadsPerPage", "" + readStats.getMedian());
+		xml.textElement("medianWritesPerPage",
+				"" + writeStats.getMedian());
+		xml.textElement("medianReadTimePerPage",
+				"" + readTimeStats.getMedian());
+		xml.textElement("medianWriteTimePerPage",
+				"" + writeTimeStats.getMedian());
+
+		xml.textElement("maxReadsPerPage", "" + readStats.getMax());
+		xml.textElement("maxWritesPerPage", "" + writeStats.getMax());
+		xml.textElement("maxReadTimePerPage", "" + readTimeStats.getMax());
+		xml.textElement("maxWriteTimePerPage", "" + writeTimeStats.getMax());
+
+		xml.textElement("minReadsPerPage", "" + readStats.getMin());
+		xml.textElement("minWritesPerPage", "" + writeStats.getMin());
+		xml.textElement("minReadTimePerPage", "" + readTimeStats.getMin());
+		xml.textElement("minWriteTimePerPage", "" + writeTimeStats.getMin());
+
+		xml.textElement("percentil90ReadsPerPage",
+				"" + readStats.getPercentile90());
+		xml.textElement("percentil90WritesPerPage",
+				"" + writeStats.getPercentile90());
+		xml.textElement("percentil90ReadTimePerPage",
+				"" + readTimeStats.getPercentile90());
+		xml.textElement("percentil90WriteTimePerPage",
+				"" + writeTimeStats.getPercentile90());
+
+		for (PageMetrics metric : metrics) {
+			writePage(metric, xml);
+		}
 
-		DescriptiveStatistics stats = new DescriptiveStatistics();
+		xml.endElement();
+	}
 
-		for (HTMLPageResponse resp : responses) {
-			String value = resp.getHeaderValue(headerName);
-			if (value != null)
-				stats.addValue(Integer.parseInt(value));
+	private void writeTemplates(List<TemplateStatistics> templateStats,
+			IndentingXMLWriter xml) throws XMLStreamException {
+		xml.startElement("templates");
+		for (TemplateStatistics template : templateStats) {
+			MetricsStatistics stats = template.getStats();
+			xml.startElement("template");
+			xml.attribute("pages", "" + template.getNrOfPages());
+			xml.cdataElement("path", template.getTemplate());
+			writeTemplateStatistic("reads", stats.getReads(), xml);
+			writeTemplateStatistic("writes", stats.getWrites(), xml);
+			writeTemplateStatistic("read-time", stats.getReadTime(), xml);
+			writeTemplateStatistic("write-time", stats.getWriteTime(), xml);
+			xml.endElement();
 		}
-		return stats;
+		xml.endElement();
 	}
 
-	private Element getResult(Set<HTMLPageResponse> responses) {
-
-		Element pages = new Element("pages");
-		Element totalReads = new Element("totalReads");
-		Element totalWrites = new Element("totalWrites");
-		Element meanReadsPerPage = new Element("meanReadsPerPage");
-		Element meanWritesPerPage = new Element("meanWritesPerPage");
-		Element medianReadsPerPage = new Element("medianReadsPerPage");
-		Element medianWritesPerPage = new Element("medianWritesPerPage");
-		Element maxReadsPerPage = new Element("maxReadsPerPage");
-		Element maxWritesPerPage = new Element("maxWritesPerPage");
-		Element minReadsPerPage = new Element("minReadsPerPage");
-		Element minWritesPerPage = new Element("minWritesPerPage");
-		Element percentilReadsPerPage = new Element("percentil90ReadsPerPage");
-		Element percentilWritesPerPage = new Element("percentil90WritesPerPage");
-		
-		Element meanReadTimePerPage = new Element("meanReadTimePerPage");
-		Element meanWriteTimePerPage = new Element("meanWriteTimePerPage");
-		Element medianReadTimePerPage = new Element("medianReadTimePerPage");
-		Element medianWriteTimePerPage = new Element("medianWriteTimePerPage");
-		Element maxReadTimePerPage = new Element("maxReadTimePerPage");
-		Element maxWriteTimePerPage = new Element("maxWriteTimePerPage");
-		Element minReadTimePerPage = new Element("minReadTimePerPage");
-		Element minWriteTimePerPage = new Element("minWriteTimePerPage");
-		Element percentilReadTimePerPage = new Element("percentil90ReadTimePerPage");
-		Element percentilWriteTimePerPage = new Element("percentil90WriteTimePerPage");
-		
-		
-		
-		DescriptiveStatistics readStats = getStats(
-				JDBCMetricsBuilder.JDBC_READ_HEADER_NAME, responses);
-		DescriptiveStatistics writeStats = getStats(
-				JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME, responses);
-		DescriptiveStatistics readTimeStats = getStats(
-				JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME, responses);
-		DescriptiveStatistics writeTimeStats = getStats(
-				JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME, responses);
-
-
-		totalReads.addContent("" + readStats.getSum());
-		totalWrites.addContent("" + writeStats.getSum());
-		pages.addContent(totalReads);
-		pages.addContent(totalWrites);
-
-		meanReadsPerPage.addContent("" + readStats.getMean());
-		meanWritesPerPage.addContent("" + writeStats.getMean());
-		meanReadTimePerPage.addContent("" + readTimeStats.getMean());
-		meanWriteTimePerPage.addContent("" + writeTimeStats.getMean());
-
-		
-		pages.addContent(meanReadsPerPage);
-		pages.addContent(meanWritesPerPage);
-		pages.addContent(meanWriteTimePerPage);
-		pages.addContent(meanReadTimePerPage);
-
-		medianReadsPerPage.addContent("" + readStats.getPercentile(50));
-		medianWritesPerPage.addContent("" + writeStats.getPercentile(50));
-		medianReadTimePerPage.addContent("" + readTimeStats.getPercentile(50));
-		medianWriteTimePerPage.addContent("" + writeTimeStats.getPercentile(50));
-
-		pages.addContent(medianReadsPerPage);
-		pages.addContent(medianWritesPerPage);
-		pages.addContent(medianReadTimePerPage);
-		pages.addContent(medianWriteTimePerPage);
-
-		
-		maxReadsPerPage.addContent("" + readStats.getMax());
-		maxWritesPerPage.addContent("" + writeStats.getMax());
-		maxReadTimePerPage.addContent("" + readTimeStats.getMax());
-		maxWriteTimePerPage.addContent("" + writeTimeStats.getMax());
-
-		
-		pages.addContent(maxReadsPerPage);
-		pages.addContent(maxWritesPerPage);
-		pages.addContent(maxReadTimePerPage);
-		pages.addContent(maxWriteTimePerPage);
-
-		
-		minReadsPerPage.addContent("" + readStats.getMin());
-		minWritesPerPage.addContent("" + writeStats.getMin());
-		minReadTimePerPage.addContent("" + readTimeStats.getMin());
-		minWriteTimePerPage.addContent("" + writeTimeStats.getMin());
-		
-		pages.addContent(minReadsPerPage);
-		pages.addContent(minWritesPerPage);
-		pages.addContent(minReadTimePerPage);
-		pages.addContent(minWriteTimePerPage);
-
-		
-		percentilReadsPerPage.addContent("" + readStats.getPercentile(90));
-		percentilWritesPerPage.addContent("" + writeStats.getPercentile(90));
-		percentilReadTimePerPage.addContent("" + readTimeStats.getPercentile(90));
-		percentilWriteTimePerPage.addContent("" + writeTimeStats.getPercentile(90));
-
-		pages.addContent(percentilReadsPerPage);
-		pages.addContent(percentilWritesPerPage);
-		pages.addContent(percentilReadTimePerPage);
-		pages.addContent(percentilWriteTimePerPage);
-
-		
-		for (HTMLPageResponse resp : responses) {
-			Element page = new Element("page");
-			Element url = new Element("url");
-			url.addContent(new CDATA(resp.getPageUrl().getUrl()));
-			page.addContent(url);
-			if (resp.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME) != null) {
-				Element reads = new Element("reads");
-				reads.addContent(resp
-						.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME));
-				page.addContent(reads);
-			}
-			if (resp.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME) != null) {
-				Element writes = new Element("writes");
-				writes.addContent(resp
-						.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME));
-				page.addContent(writes);
-
-			}
-			if (resp.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME) != null) {
-				Element readTime = new Element("read-time");
-				readTime.addContent(resp
-						.getHeaderValue(JDBCMetricsBuilder.JDBC_READ_TIME_HEADER_NAME));
-				page.addContent(readTime);
-			}
-			if (resp.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME) != null) {
-				Element writeTime = new Element("write-time");
-				writeTime.addContent(resp
-						.getHeaderValue(JDBCMetricsBuilder.JDBC_WRITE_TIME_HEADER_NAME));
-				page.addContent(writeTime);
-
-			}
-
-			pages.addContent(page);
+	private void writeTemplateStatistic(String name, Statistic statistic,
+			IndentingXMLWriter xml) throws XMLStreamException {
+		if (statistic.getCount() == 0)
+			return;
+		xml.emptyElement(name);
+		xml.attribute("count", "" + statistic.getCount());
+		xml.attribute("sum", "" + statistic.getSum());
+		xml.attribute("median", "" + statistic.getMedian());
+		xml.attribute("percentil90", "" + statistic.getPercentile90());
+		xml.attribute("max", "" + statistic.getMax());
+	}
 
-		}
+	private void writePage(PageMetrics metric, IndentingXMLWriter xml)
+			throws XMLStreamException {
+		xml.startElement("page");
+		xml.cdataElement("url", metric.getUrl());
+		if (metric.getReads() != PageMetrics.NOT_SET)
+			xml.textElement("reads", "" + metric.getReads());
+		if (metric.getWrites() != PageMetrics.NOT_SET)
+			xml.textElement("writes", "" + metric.getWrites());
+		if (metric.getReadTime() != PageMetrics.NOT_SET)
+			xml.textElement("read-time", "" + metric.getReadTime());
+		if (metric.getWriteTime() != PageMetrics.NOT_SET)
+			xml.textElement("write-time", "" + metric.getWriteTime());
+		if (metric.getDistribution() != null)
+			writeDistribution(metric.getDistribution(), xml);
+		xml.endElement();
+	}
 
-		return pages;
+	private void writeDistribution(PageDistribution distribution,
+			IndentingXMLWriter xml) throws XMLStreamException {
+		xml.startElement("distribution");
+		xml.attribute("samples", "" + distribution.getSamples());
+		writeStatistic("reads", distribution.getReads(), xml);
+		writeStatistic("writes", distribution.getWrites(), xml);
+		writeStatistic("read-time", distribution.getReadTime(), xml);
+		writeStatistic("write-time", distribution.getWriteTime(), xml);
+		xml.endElement();
+	}
 
+	private void writeStatistic(String name, Statistic statistic,
+			IndentingXMLWriter xml) throws XMLStreamException {
+		if (statistic.getCount() == 0)
+			return;
+		xml.emptyElement(name);
+		xml.attribute("min", "" + statistic.getMin());
+		xml.attribute("median", "" + statistic.getMedian());
+		xml.attribute("percentil90", "" + statistic.getPercentile90());
+		xml.attribute("max", "" + statistic.getMax());
+	}
+
+	/**
+	 * Close the file if the report failed half way, closing it twice is ok.
+	 */
+	private void close(OutputStream out) {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} catch (IOException e) {
+			logger.println("Couldn't close XML file " + FILENAME + " "
+					+ e.toString());
+		}
 	}
 }
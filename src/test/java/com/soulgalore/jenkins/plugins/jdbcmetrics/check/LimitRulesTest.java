@@ -0,0 +1,120 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LimitRulesTest {
+
+	private static final String HOST = "http://www.example.com";
+
+	@Test
+	public void firstMatchingRuleWins() {
+		LimitRules rules = LimitRules.parse("/search 40 5\n"
+				+ "^/product/[0-9]+$ 10 0 200\n" + "/product 20 1\n"
+				+ "^/search/special 1 1\n" + "/ 2 0");
+
+		Assert.assertEquals("/search", pattern(rules, "/search/special"));
+		Assert.assertEquals("^/product/[0-9]+$", pattern(rules, "/product/12"));
+		Assert.assertEquals("/product", pattern(rules, "/product/12/reviews"));
+		Assert.assertEquals("/", pattern(rules, "/about"));
+	}
+
+	@Test
+	public void regexBeforePrefixWins() {
+		LimitRules rules = LimitRules.parse("^/a/b 1 1\n/a 2 2");
+		Assert.assertEquals("^/a/b", pattern(rules, "/a/b/c"));
+		Assert.assertEquals("/a", pattern(rules, "/a/c"));
+	}
+
+	@Test
+	public void firstOfSeveralMatchingRegexesWins() {
+		LimitRules rules = LimitRules.parse("^/(x|y)/z 1 1\n^/x 2 2\n^/(x)/z 3 3");
+		Assert.assertEquals("^/(x|y)/z", pattern(rules, "/x/z"));
+		Assert.assertEquals("^/x", pattern(rules, "/x/y"));
+	}
+
+	@Test
+	public void noRuleMatches() {
+		LimitRules rules = LimitRules.parse("/search 40 5\n^/product 1 1");
+		Assert.assertNull(rules.match(HOST + "/about"));
+		Assert.assertNull(LimitRules.parse("").match(HOST + "/about"));
+	}
+
+	@Test
+	public void matchesThePathAndQuery() {
+		LimitRules rules = LimitRules.parse("^/search\\?q= 1 1");
+		Assert.assertEquals("^/search\\?q=", pattern(rules, "/search?q=shoes"));
+		Assert.assertEquals("^/search\\?q=", rules.match("/search?q=shoes")
+				.getPattern());
+	}
+
+	@Test
+	public void parsesTheLimits() {
+		LimitRule rule = LimitRules.parse("# comment\n\n/a - 3 200").getRules()
+				.get(0);
+		Assert.assertEquals(PageCheck.NOT_CHECKED, rule.getMaxReads());
+		Assert.assertEquals(3, rule.getMaxWrites());
+		Assert.assertEquals(200, rule.getMaxTime());
+		Assert.assertEquals(PageCheck.NOT_CHECKED, LimitRules.parse("/a 1 2")
+				.getRules().get(0).getMaxTime());
+	}
+
+	@Test
+	public void parseErrorTellsTheLine() {
+		assertParseError("/a 1 1\n/b 1", "Line 2 [/b 1]");
+		assertParseError("/a 1 x", "Line 1 [/a 1 x]");
+		assertParseError("/a 1 -2", "isn't a positive number");
+		assertParseError("/a 1 1 1 1", "A rule needs");
+		assertParseError("^/a(b 1 1", "Line 1");
+	}
+
+	@Test
+	public void rejectsBackreferencesAndNamedGroups() {
+		assertParseError("^/(a)\\1 1 1", "Backreferences");
+		assertParseError("^/(?<id>a)\\k<id> 1 1", "Backreferences");
+		assertParseError("^/(?<id>a) 1 1", "Backreferences");
+	}
+
+	@Test
+	public void acceptsEscapesAndLookbehinds() {
+		Assert.assertFalse(LimitRules.hasGroupReference("^/a\\\\1"));
+		Assert.assertFalse(LimitRules.hasGroupReference("^/\\Q\\1\\E"));
+		Assert.assertFalse(LimitRules.hasGroupReference("^/(?<=a)b(?<!c)"));
+		Assert.assertTrue(LimitRules.hasGroupReference("^/(a)\\\\\\1"));
+	}
+
+	private static String pattern(LimitRules rules, String path) {
+		LimitRule rule = rules.match(HOST + path);
+		return rule == null ? null : rule.getPattern();
+	}
+
+	private static void assertParseError(String text, String message) {
+		try {
+			LimitRules.parse(text);
+			Assert.fail("Expected a parse error for " + text);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage(),
+					e.getMessage().contains(message));
+		}
+	}
+}
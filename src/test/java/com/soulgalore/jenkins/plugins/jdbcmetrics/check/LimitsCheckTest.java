@@ -0,0 +1,58 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.check;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+
+public class LimitsCheckTest {
+
+	private static final String HOST = "http://www.example.com";
+
+	@Test
+	public void excessIsAboveTheLimitsOfTheMatchingRule() {
+		LimitsCheck check = new LimitsCheck(10, 2,
+				LimitRules.parse("/search 40 - \n/about 1 0"));
+
+		// the rule allows more than the max
+		Assert.assertNull(check.check(page("/search", 30, 100)));
+		Assert.assertEquals(0, check.getExcess(page("/search", 30, 100)));
+		Assert.assertEquals(5, check.getExcess(page("/search", 45, 100)));
+		// the rule allows less than the max
+		Assert.assertEquals(4 + 1, check.getExcess(page("/about", 5, 1)));
+		// no rule, the max is used
+		Assert.assertEquals(1 + 3, check.getExcess(page("/other", 11, 5)));
+	}
+
+	@Test
+	public void excessDoesNotOverflow() {
+		LimitsCheck check = new LimitsCheck(0, 0);
+		Assert.assertEquals(2L * Integer.MAX_VALUE, check.getExcess(page(
+				"/", Integer.MAX_VALUE, Integer.MAX_VALUE)));
+	}
+
+	private static PageMetrics page(String path, int reads, int writes) {
+		return new PageMetrics(HOST + path, 200, 10, reads, writes, 0, 0,
+				null);
+	}
+}
@@ -0,0 +1,114 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.check.PageCheck;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.Cancellation;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsCollector;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.MetricsSink;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.PageMetrics;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.metrics.SamplingPipeline;
+
+public class FailFastTest {
+
+	private static final int MAX_READS = 10;
+
+	private static final PageCheck READS = new PageCheck() {
+		private static final long serialVersionUID = 1L;
+
+		public String check(PageMetrics page) {
+			return page.getReads() > MAX_READS ? "Too many reads" : null;
+		}
+	};
+
+	@Test
+	public void checksTheMergedSamples() {
+		Cancellation cancellation = new Cancellation(Long.MAX_VALUE);
+		SamplingPipeline pipeline = pipeline(3, 1, cancellation);
+
+		// one slow sample, but the median is within the limit
+		pipeline.onResponse(response("http://www.example.com/", 50));
+		pipeline.onResponse(response("http://www.example.com/", 5));
+		pipeline.onResponse(response("http://www.example.com/", 5));
+		Assert.assertFalse(cancellation.isCancelled());
+	}
+
+	@Test
+	public void cancelsWhenEnoughPagesFailed() {
+		Cancellation cancellation = new Cancellation(Long.MAX_VALUE);
+		SamplingPipeline pipeline = pipeline(1, 2, cancellation);
+
+		pipeline.onResponse(response("http://www.example.com/a", 50));
+		pipeline.onResponse(response("http://www.example.com/b", 5));
+		Assert.assertFalse(cancellation.isCancelled());
+		pipeline.onResponse(response("http://www.example.com/c", 50));
+		Assert.assertTrue(cancellation.isCancelled());
+	}
+
+	@Test
+	public void countsTheFailuresOfAllSinksTogether() {
+		FailFast failFast = new FailFast(Collections.singletonList(READS), 2);
+		Cancellation first = new Cancellation(Long.MAX_VALUE);
+		Cancellation second = new Cancellation(Long.MAX_VALUE);
+		MetricsSink firstSink = failFast.sink(first);
+		MetricsSink secondSink = failFast.sink(second);
+
+		firstSink.add(page("http://www.example.com/a", 50));
+		Assert.assertFalse(first.isCancelled());
+		secondSink.add(page("http://www.example.com/b", 50));
+		Assert.assertTrue(second.isCancelled());
+
+		// the first sink finds out on its next page, even if it passes
+		Assert.assertFalse(first.isCancelled());
+		firstSink.add(page("http://www.example.com/c", 5));
+		Assert.assertTrue(first.isCancelled());
+	}
+
+	private static SamplingPipeline pipeline(int samples, int maxFailures,
+			Cancellation cancellation) {
+		FailFast failFast = new FailFast(Collections.singletonList(READS),
+				maxFailures);
+		return new SamplingPipeline(samples, new MetricsCollector(),
+				failFast.sink(cancellation));
+	}
+
+	private static PageMetrics page(String url, int reads) {
+		return new PageMetrics(url, 200, 10, reads, 0, 0, 0, null);
+	}
+
+	private static HTMLPageResponse response(String url, int reads) {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME, "" + reads);
+		headers.put(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME, "0");
+		return new HTMLPageResponse(new PageURL(url), 200, headers, "",
+				"UTF-8", 0, "text/html", 10);
+	}
+}
@@ -0,0 +1,111 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.crawler.core.PageURLParser;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.fetcher.ResponseListener;
+
+public class LinkDiscoveryTest {
+
+	private static final String START = "http://www.example.com/";
+	private static final String BROKEN = START + "broken";
+	private static final String REMOVED = START + "removed";
+
+	private static final ResponseListener NONE = new ResponseListener() {
+		public void onResponse(HTMLPageResponse response) {
+		}
+	};
+
+	private static final PageURLParser NO_LINKS = new PageURLParser() {
+		public Set<PageURL> get(HTMLPageResponse response) {
+			return Collections.emptySet();
+		}
+	};
+
+	@Test
+	public void keepsFailingUrls() {
+		UrlFrontier frontier = start();
+		for (int build = 0; build < 5; build++)
+			frontier = build(frontier, 500, 200);
+		Assert.assertNotNull(find(frontier, BROKEN));
+	}
+
+	@Test
+	public void removesUrlsGoneForSeveralBuilds() {
+		UrlFrontier frontier = start();
+		for (int build = 1; build < LinkDiscovery.MAX_TIMES_GONE; build++) {
+			frontier = build(frontier, 200, 404);
+			Assert.assertEquals(build, find(frontier, REMOVED).getTimesGone());
+		}
+		frontier = build(frontier, 200, 410);
+		Assert.assertNull(find(frontier, REMOVED));
+	}
+
+	@Test
+	public void aWorkingResponseResetsTheCount() {
+		UrlFrontier frontier = build(start(), 200, 404);
+		frontier = build(frontier, 200, 200);
+		Assert.assertEquals(0, find(frontier, REMOVED).getTimesGone());
+	}
+
+	private static UrlFrontier start() {
+		List<FrontierUrl> urls = new ArrayList<FrontierUrl>();
+		urls.add(new FrontierUrl(START, null, 1));
+		urls.add(new FrontierUrl(BROKEN, START, 2));
+		urls.add(new FrontierUrl(REMOVED, START, 2));
+		return new UrlFrontier(START, 2, "", "", urls);
+	}
+
+	private static UrlFrontier build(UrlFrontier frontier, int brokenCode,
+			int removedCode) {
+		LinkDiscovery discovery = new LinkDiscovery(NONE, NO_LINKS, frontier,
+				0, 1, null, UrlCanonicalizer.NONE);
+		discovery.onResponse(response(START, 200));
+		discovery.onResponse(response(BROKEN, brokenCode));
+		if (find(frontier, REMOVED) != null)
+			discovery.onResponse(response(REMOVED, removedCode));
+		return discovery.getFrontier();
+	}
+
+	private static HTMLPageResponse response(String url, int code) {
+		return new HTMLPageResponse(new PageURL(url), code,
+				new HashMap<String, String>(), "", "UTF-8", 0, "text/html", 10);
+	}
+
+	private static FrontierUrl find(UrlFrontier frontier, String url) {
+		for (FrontierUrl frontierUrl : frontier.getUrls()) {
+			if (frontierUrl.getUrl().equals(url))
+				return frontierUrl;
+		}
+		return null;
+	}
+}
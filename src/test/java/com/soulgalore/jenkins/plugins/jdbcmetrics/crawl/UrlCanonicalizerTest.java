@@ -0,0 +1,92 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlCanonicalizerTest {
+
+	private static final UrlCanonicalizer DEFAULTS = new UrlCanonicalizer(
+			"", "", false, false, false);
+
+	@Test
+	public void lowerCasesTheSchemeAndHostOnly() {
+		Assert.assertEquals("http://www.example.com/Path/A",
+				DEFAULTS.canonicalize("HTTP://WWW.Example.com/Path/A"));
+	}
+
+	@Test
+	public void removesTheDefaultPortAndTheFragment() {
+		Assert.assertEquals("http://www.example.com/a",
+				DEFAULTS.canonicalize("http://www.example.com:80/a#top"));
+		Assert.assertEquals("https://www.example.com/a",
+				DEFAULTS.canonicalize("https://www.example.com:443/a"));
+		Assert.assertEquals("http://www.example.com:8080/a",
+				DEFAULTS.canonicalize("http://www.example.com:8080/a"));
+	}
+
+	@Test
+	public void addsThePathOfAHost() {
+		Assert.assertEquals("http://www.example.com/",
+				DEFAULTS.canonicalize("http://www.example.com"));
+		Assert.assertEquals("http://www.example.com/?a=1",
+				DEFAULTS.canonicalize("http://www.example.com?a=1"));
+	}
+
+	@Test
+	public void removesTheIgnoredParams() {
+		UrlCanonicalizer canonicalizer = new UrlCanonicalizer(
+				"utm_*, sessionid", "", false, false, false);
+		Assert.assertEquals("http://www.example.com/a?b=2&a=1",
+				canonicalizer.canonicalize("http://www.example.com/a?b=2"
+						+ "&utm_source=mail&a=1&sessionid=42"));
+		Assert.assertEquals("http://www.example.com/a",
+				canonicalizer.canonicalize("http://www.example.com/a"
+						+ "?utm_medium=x"));
+	}
+
+	@Test
+	public void keepsOnlyTheKeptParams() {
+		UrlCanonicalizer canonicalizer = new UrlCanonicalizer("", "id, q*",
+				true, false, false);
+		Assert.assertEquals("http://www.example.com/a?id=1&query=x",
+				canonicalizer.canonicalize("http://www.example.com/a?query=x"
+						+ "&page=2&id=1"));
+	}
+
+	@Test
+	public void changesThePathWhenConfigured() {
+		UrlCanonicalizer canonicalizer = new UrlCanonicalizer("", "", false,
+				true, true);
+		Assert.assertEquals("http://www.example.com/path?Q=A",
+				canonicalizer.canonicalize("http://www.example.com/Path//?Q=A"));
+		Assert.assertEquals("http://www.example.com/",
+				canonicalizer.canonicalize("http://www.example.com/"));
+	}
+
+	@Test
+	public void keepsOtherUrlsAsTheyAre() {
+		Assert.assertEquals("/relative?b=1", DEFAULTS.canonicalize("/relative?b=1"));
+		Assert.assertEquals("HTTP://WWW.EXAMPLE.COM/#a",
+				UrlCanonicalizer.NONE.canonicalize("HTTP://WWW.EXAMPLE.COM/#a"));
+	}
+}
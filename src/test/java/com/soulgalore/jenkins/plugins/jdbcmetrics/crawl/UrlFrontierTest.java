@@ -0,0 +1,79 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.crawl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.soulgalore.crawler.core.PageURL;
+
+public class UrlFrontierTest {
+
+	private static final String START = "http://www.example.com/";
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		List<FrontierUrl> urls = new ArrayList<FrontierUrl>();
+		urls.add(new FrontierUrl(START, null, 1));
+		urls.add(new FrontierUrl(START + "a", START, 2, 2));
+		urls.add(new FrontierUrl(START + "a/\u00e5", START + "a", 3));
+		UrlFrontier frontier = new UrlFrontier(START, 3, "/a", null, urls);
+
+		File file = File.createTempFile("jdbcmetrics", ".bin");
+		try {
+			frontier.write(file);
+			UrlFrontier read = UrlFrontier.read(file);
+
+			Assert.assertTrue(read.isCrawlOf(START, 3, "/a", ""));
+			Assert.assertFalse(read.isCrawlOf(START, 2, "/a", ""));
+			Assert.assertEquals(urls.size(), read.getUrls().size());
+			for (int i = 0; i < urls.size(); i++) {
+				FrontierUrl expected = urls.get(i);
+				FrontierUrl actual = read.getUrls().get(i);
+				Assert.assertEquals(expected.getUrl(), actual.getUrl());
+				Assert.assertEquals(expected.getReferer(), actual.getReferer());
+				Assert.assertEquals(expected.getLevel(), actual.getLevel());
+				Assert.assertEquals(expected.getTimesGone(),
+						actual.getTimesGone());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void levelsFollowTheReferers() {
+		List<PageURL> crawled = new ArrayList<PageURL>();
+		crawled.add(new PageURL(START, ""));
+		crawled.add(new PageURL(START + "b", START + "a"));
+		crawled.add(new PageURL(START + "a", START));
+		UrlFrontier frontier = UrlFrontier.fromCrawl(START, 3, "", "", crawled);
+
+		Assert.assertEquals(1, frontier.getUrls().get(0).getLevel());
+		Assert.assertEquals(3, frontier.getUrls().get(1).getLevel());
+		Assert.assertEquals(2, frontier.getUrls().get(2).getLevel());
+	}
+}
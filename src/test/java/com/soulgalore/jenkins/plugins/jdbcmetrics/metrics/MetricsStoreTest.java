@@ -0,0 +1,88 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsStoreTest {
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		List<PageMetrics> metrics = new ArrayList<PageMetrics>();
+		metrics.add(new PageMetrics("http://www.example.com/b", 200, 120, 4,
+				1, 30, 5, null));
+		metrics.add(new PageMetrics("http://www.example.com/a?q=\u00e5", 500,
+				3000000000L, PageMetrics.NOT_SET, PageMetrics.NOT_SET,
+				PageMetrics.NOT_SET, PageMetrics.NOT_SET, null));
+		metrics.add(new PageMetrics("http://www.example.com/a", 200, 0,
+				Integer.MAX_VALUE - 1, 0, 0, 0, null));
+		MetricsStatistics stats = MetricsStatistics.of(metrics);
+
+		File file = File.createTempFile("jdbcmetrics", ".bin");
+		try {
+			MetricsStore.write(file, metrics, stats);
+			Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+
+			List<PageMetrics> read = MetricsStore.readPages(file);
+			Assert.assertEquals(metrics.size(), read.size());
+			for (int i = 0; i < metrics.size(); i++) {
+				PageMetrics expected = metrics.get(i);
+				PageMetrics actual = read.get(i);
+				Assert.assertEquals(expected.getUrl(), actual.getUrl());
+				Assert.assertEquals(expected.getResponseCode(),
+						actual.getResponseCode());
+				Assert.assertEquals(expected.getFetchTime(),
+						actual.getFetchTime());
+				Assert.assertEquals(expected.getReads(), actual.getReads());
+				Assert.assertEquals(expected.getWrites(), actual.getWrites());
+				Assert.assertEquals(expected.getReadTime(),
+						actual.getReadTime());
+				Assert.assertEquals(expected.getWriteTime(),
+						actual.getWriteTime());
+			}
+
+			BuildSummary summary = MetricsStore.readSummary(file);
+			Assert.assertEquals(3, summary.getPages());
+			Assert.assertEquals(stats.getReads().getSum(),
+					summary.getTotalReads(), 0);
+			Assert.assertEquals(stats.getWriteTime().getPercentile90(),
+					summary.getPercentile90WriteTime(), 0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		File file = File.createTempFile("jdbcmetrics", ".bin");
+		try {
+			MetricsStore.readSummary(file);
+		} finally {
+			file.delete();
+		}
+	}
+}
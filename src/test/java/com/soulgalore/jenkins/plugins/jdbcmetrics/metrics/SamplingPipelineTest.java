@@ -0,0 +1,81 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.soulgalore.crawler.core.HTMLPageResponse;
+import com.soulgalore.crawler.core.PageURL;
+import com.soulgalore.jenkins.plugins.jdbcmetrics.JDBCMetricsBuilder;
+
+public class SamplingPipelineTest {
+
+	@Test
+	public void passesOnThePageWhenAllSamplesArrived() {
+		MetricsCollector collector = new MetricsCollector();
+		SamplingPipeline pipeline = new SamplingPipeline(3, collector);
+
+		pipeline.onResponse(response("http://www.example.com/", 50));
+		pipeline.onResponse(response("http://www.example.com/", 5));
+		Assert.assertTrue(collector.getMetrics().isEmpty());
+		pipeline.onResponse(response("http://www.example.com/", 5));
+
+		List<PageMetrics> metrics = collector.getMetrics();
+		Assert.assertEquals(1, metrics.size());
+		Assert.assertEquals(5, metrics.get(0).getReads());
+	}
+
+	@Test
+	public void flushPassesOnTheUnfinishedPages() {
+		MetricsCollector collector = new MetricsCollector();
+		SamplingPipeline pipeline = new SamplingPipeline(3, collector);
+
+		pipeline.onResponse(response("http://www.example.com/a", 5));
+		pipeline.onResponse(response("http://www.example.com/a", 5));
+		pipeline.onResponse(response("http://www.example.com/a", 5));
+		pipeline.onResponse(response("http://www.example.com/b", 7));
+		Assert.assertEquals(1, collector.getMetrics().size());
+
+		pipeline.flush();
+		List<PageMetrics> metrics = collector.getMetrics();
+		Assert.assertEquals(2, metrics.size());
+		Assert.assertEquals("http://www.example.com/b", metrics.get(1)
+				.getUrl());
+		Assert.assertEquals(7, metrics.get(1).getReads());
+
+		// nothing is passed on twice
+		pipeline.flush();
+		Assert.assertEquals(2, collector.getMetrics().size());
+	}
+
+	private static HTMLPageResponse response(String url, int reads) {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(JDBCMetricsBuilder.JDBC_READ_HEADER_NAME, "" + reads);
+		headers.put(JDBCMetricsBuilder.JDBC_WRITE_HEADER_NAME, "0");
+		return new HTMLPageResponse(new PageURL(url), 200, headers, "",
+				"UTF-8", 0, "text/html", 10);
+	}
+}
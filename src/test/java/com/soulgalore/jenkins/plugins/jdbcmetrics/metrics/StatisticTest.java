@@ -0,0 +1,105 @@
+/******************************************************
+ * JDBCMetrics for Jenkins
+ * 
+ *
+ * Copyright (C) 2013 by Peter Hedenskog (http://peterhedenskog.com)
+ *
+ ******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License. You may obtain a copy of the License at
+ * 
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is 
+ * distributed  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ *******************************************************
+ */
+package com.soulgalore.jenkins.plugins.jdbcmetrics.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatisticTest {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void noValues() {
+		Statistic statistic = Statistic.of(new int[0], 0);
+		Assert.assertEquals(0, statistic.getCount());
+		Assert.assertEquals(0, statistic.getSum(), DELTA);
+		Assert.assertTrue(Double.isNaN(statistic.getMedian()));
+		Assert.assertTrue(Double.isNaN(statistic.getMax()));
+	}
+
+	@Test
+	public void oneValue() {
+		Statistic statistic = Statistic.of(new int[] { 7 }, 1);
+		Assert.assertEquals(7, statistic.getMin(), DELTA);
+		Assert.assertEquals(7, statistic.getMedian(), DELTA);
+		Assert.assertEquals(7, statistic.getPercentile90(), DELTA);
+		Assert.assertEquals(7, statistic.getMax(), DELTA);
+	}
+
+	@Test
+	public void onlyTheFirstCountValuesIsUsed() {
+		Statistic statistic = Statistic.of(new int[] { 3, 1, 2, 100 }, 3);
+		Assert.assertEquals(3, statistic.getCount());
+		Assert.assertEquals(6, statistic.getSum(), DELTA);
+		Assert.assertEquals(3, statistic.getMax(), DELTA);
+		Assert.assertEquals(2, statistic.getMedian(), DELTA);
+	}
+
+	@Test
+	public void sameAsSortingTheValues() {
+		Random random = new Random(4711);
+		for (int size = 1; size < 200; size++) {
+			// a small range gives many duplicates, a hard case for selection
+			int range = size % 2 == 0 ? 5 : 10000;
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++)
+				values[i] = random.nextInt(range);
+			int[] sorted = values.clone();
+			Arrays.sort(sorted);
+			long sum = 0;
+			for (int value : sorted)
+				sum += value;
+
+			Statistic statistic = Statistic.of(values, size);
+			Assert.assertEquals(sum, statistic.getSum(), DELTA);
+			Assert.assertEquals((double) sum / size, statistic.getMean(), 1e-6);
+			Assert.assertEquals(sorted[0], statistic.getMin(), DELTA);
+			Assert.assertEquals(sorted[size - 1], statistic.getMax(), DELTA);
+			Assert.assertEquals("median of " + size,
+					percentile(sorted, 50), statistic.getMedian(), DELTA);
+			Assert.assertEquals("90 percentile of " + size,
+					percentile(sorted, 90), statistic.getPercentile90(), DELTA);
+		}
+	}
+
+	/**
+	 * The estimation of commons-math Percentile, on sorted values.
+	 */
+	private static double percentile(int[] sorted, double p) {
+		int count = sorted.length;
+		if (count == 1)
+			return sorted[0];
+		double pos = p * (count + 1) / 100;
+		double fpos = Math.floor(pos);
+		int intPos = (int) fpos;
+		if (pos < 1)
+			return sorted[0];
+		if (pos >= count)
+			return sorted[count - 1];
+		double lower = sorted[intPos - 1];
+		double upper = sorted[intPos];
+		return lower + (pos - fpos) * (upper - lower);
+	}
+}